@@ -0,0 +1,119 @@
+package modifiedfilesearch;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import modifiedfilesearch.data.FileInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures SpecifiedFileVisitor over a synthetic tree, both walking the
+ * tree and invoking visitFile alone with attributes read in advance. The
+ * tree is created once per fork in the temporary directory, which should be
+ * on the file system of interest; its metadata will be cached by the
+ * operating system after the first iterations.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FileWalkBenchmark {
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        root = SyntheticTree.create(DEPTH, DIRS_PER_DIR, FILES_PER_DIR);
+        pattern = SearchCriteria.buildGlob(SyntheticTree.DEFAULT_TYPES);
+        fileInfoQueue = new LinkedBlockingQueue<FileInfo>();
+        pool = new ForkJoinPool(parallelism);
+        files = new ArrayList<Path>();
+        attrs = new ArrayList<BasicFileAttributes>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes fileAttrs) {
+                files.add(file);
+                attrs.add(fileAttrs);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        pool.shutdownNow();
+        SyntheticTree.delete(root);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearQueue() {
+        fileInfoQueue.clear();
+    }
+
+    /**
+     * Walks the tree on a single thread with Files.walkFileTree.
+     */
+    @Benchmark
+    public int walkFileTree() throws IOException {
+        Files.walkFileTree(root, new SpecifiedFileVisitor(fileInfoQueue, pattern));
+        return drain();
+    }
+
+    /**
+     * Walks the tree with ParallelFileWalker, using a pool of the parallelism
+     * specified by the parameter.
+     */
+    @Benchmark
+    public int parallelWalk() throws IOException {
+        new ParallelFileWalker(parallelism).walkFileTree(pool, root,
+                new SpecifiedFileVisitor(fileInfoQueue, pattern));
+        return drain();
+    }
+
+    /**
+     * Invokes visitFile for every file of the tree without any I/O. Divide
+     * by the file count reported in the setup to get the cost per callback.
+     */
+    @Benchmark
+    public int visitFileCallbacks() throws IOException {
+        SpecifiedFileVisitor visitor = new SpecifiedFileVisitor(fileInfoQueue, pattern);
+        for (int i = 0; i < files.size(); i++) {
+            visitor.visitFile(files.get(i), attrs.get(i));
+        }
+        return drain();
+    }
+
+    private int drain() {
+        int count = fileInfoQueue.size();
+        fileInfoQueue.clear();
+        return count;
+    }
+
+    @Param({"1", "4"})
+    public int parallelism;
+    private static final int DEPTH = 3;
+    private static final int DIRS_PER_DIR = 6;
+    private static final int FILES_PER_DIR = 40;
+    private Path root;
+    private String pattern;
+    private BlockingQueue<FileInfo> fileInfoQueue;
+    private ForkJoinPool pool;
+    private List<Path> files;
+    private List<BasicFileAttributes> attrs;
+}
@@ -0,0 +1,83 @@
+package modifiedfilesearch;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of matching file names against the glob pattern
+ * built from the default file types, as SpecifiedFileVisitor.visitFile does
+ * for every file walked, with the generic PathMatcher and with the
+ * FileTypeMatcher used by the visitor.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GlobMatchBenchmark {
+
+    @Setup
+    public void setup() {
+        String pattern = SearchCriteria.buildGlob(SyntheticTree.DEFAULT_TYPES);
+        matcher = FileSystems.getDefault().getPathMatcher(pattern);
+        fileTypeMatcher = FileTypeMatcher.compile(pattern);
+        List<String> names = SyntheticTree.fileNames(NAME_COUNT);
+        files = new Path[NAME_COUNT];
+        for (int i = 0; i < NAME_COUNT; i++) {
+            files[i] = Paths.get("/home/user/project/src/main", names.get(i));
+            // Paths walked have usually been converted to a String already.
+            files[i].toString();
+        }
+    }
+
+    /**
+     * Matches the file name of full paths, including the Path allocated by
+     * getFileName().
+     */
+    @Benchmark
+    @OperationsPerInvocation(NAME_COUNT)
+    public void matchFileName(Blackhole bh) {
+        for (Path file : files) {
+            bh.consume(matcher.matches(file.getFileName()));
+        }
+    }
+
+    /**
+     * Matches full paths with the FileTypeMatcher used by
+     * SpecifiedFileVisitor.
+     */
+    @Benchmark
+    @OperationsPerInvocation(NAME_COUNT)
+    public void matchFileTypeMatcher(Blackhole bh) {
+        for (Path file : files) {
+            bh.consume(fileTypeMatcher.matches(file));
+        }
+    }
+
+    /**
+     * Builds the glob pattern and compiles the PathMatcher, as done once per
+     * search.
+     */
+    @Benchmark
+    public PathMatcher compilePattern() {
+        return FileSystems.getDefault().getPathMatcher(
+                SearchCriteria.buildGlob(SyntheticTree.DEFAULT_TYPES));
+    }
+
+    private static final int NAME_COUNT = 1024;
+    private PathMatcher matcher;
+    private FileTypeMatcher fileTypeMatcher;
+    private Path[] files;
+}
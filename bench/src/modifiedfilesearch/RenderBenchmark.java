@@ -0,0 +1,104 @@
+package modifiedfilesearch;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.event.ActionEvent;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JComponent;
+import javax.swing.JLayer;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import modifiedfilesearch.data.DisplayString;
+import modifiedfilesearch.data.DisplayStringImpl;
+import modifiedfilesearch.ui.DisplayStringLayerUI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the cost of shortening path strings and of painting a frame of
+ * the DisplayStringLayerUI that shows the search status. Frames are painted
+ * to an image in headless mode, so the results do not depend on a display.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+
+    @Setup(Level.Trial)
+    public void setup() throws InterruptedException, InvocationTargetException {
+        List<String> names = SyntheticTree.fileNames(LINE_COUNT);
+        final Queue<DisplayString> queue = new ConcurrentLinkedQueue<DisplayString>();
+        StringBuilder dir = new StringBuilder("/home/user");
+        for (int i = 0; i < LINE_COUNT; i++) {
+            if (i % 8 == 0) {
+                dir.append("/directory").append(i);
+            }
+            String path = dir + "/" + names.get(i);
+            queue.add(new DisplayStringImpl(path, i % 3 == 0 ? Color.RED : Color.GREEN));
+        }
+        longPath = dir + "/" + names.get(0);
+
+        ui = new DisplayStringLayerUI(queue);
+        layer = new JLayer<JComponent>(new JPanel(), ui);
+        layer.setSize(width, HEIGHT);
+        layer.doLayout();
+        image = new BufferedImage(width, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        graphics = image.createGraphics();
+
+        // Fade in and move every DisplayString on screen, then stop the
+        // timer so frames are only painted by the benchmark.
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                ui.start();
+                ActionEvent tick = new ActionEvent(layer, ActionEvent.ACTION_PERFORMED, "render");
+                while (!queue.isEmpty()) {
+                    ui.actionPerformed(tick);
+                }
+                ui.setFPS(0);
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paintFrame() {
+        layer.paint(graphics);
+        return image;
+    }
+
+    @Benchmark
+    public String shortenStringInMiddle() {
+        return DisplayStringLayerUI.shortenStringInMiddle(longPath, longPath.length() / 2);
+    }
+
+    @Param({"400", "1200"})
+    public int width;
+    private static final int HEIGHT = 800;
+    private static final int LINE_COUNT = 200;
+    private DisplayStringLayerUI ui;
+    private JLayer<JComponent> layer;
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private String longPath;
+}
@@ -0,0 +1,107 @@
+package modifiedfilesearch;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Creates a directory tree of empty files for benchmarks. The shape of the
+ * tree, the names and the modification times of the files are derived from a
+ * fixed seed, so every run benchmarks the same tree.
+ *
+ */
+final class SyntheticTree {
+
+    private SyntheticTree() {
+    }
+
+    /**
+     * Creates a tree in a new temporary directory.
+     *
+     * @param depth - Levels of directories below the root.
+     * @param dirsPerDir - Subdirectories in each directory above the bottom level.
+     * @param filesPerDir - Files in each directory.
+     * @return the root of the tree.
+     */
+    static Path create(int depth, int dirsPerDir, int filesPerDir) throws IOException {
+        Path root = Files.createTempDirectory("mfs-bench");
+        Random random = new Random(SEED);
+        populate(root, depth, dirsPerDir, filesPerDir, random);
+        return root;
+    }
+
+    /**
+     * Creates a list of file names with the extensions used by the
+     * benchmarks, about one in EXTENSIONS.length of which match the default
+     * search of the application.
+     *
+     * @param count - Number of names to create.
+     * @return the file names.
+     */
+    static List<String> fileNames(int count) {
+        Random random = new Random(SEED);
+        List<String> names = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(fileName(random, i));
+        }
+        return names;
+    }
+
+    /**
+     * Deletes a tree created by create().
+     *
+     * @param root - Root of the tree.
+     */
+    static void delete(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                    throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc)
+                    throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void populate(Path dir, int depth, int dirsPerDir, int filesPerDir,
+            Random random) throws IOException {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < filesPerDir; i++) {
+            Path file = Files.createFile(dir.resolve(fileName(random, i)));
+            // Spread modification times over the last sixty days.
+            long age = (long) (random.nextDouble() * 60 * 24 * SearchCriteria.MS_IN_HOUR);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(now - age));
+        }
+        if (depth > 0) {
+            for (int i = 0; i < dirsPerDir; i++) {
+                populate(Files.createDirectory(dir.resolve("dir" + i)), depth - 1,
+                        dirsPerDir, filesPerDir, random);
+            }
+        }
+    }
+
+    private static String fileName(Random random, int i) {
+        return "file" + i + "_" + Integer.toHexString(random.nextInt())
+                + "." + EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+    }
+
+    static final String DEFAULT_TYPES = "*.java *.xml *.conf *.script";
+    private static final String[] EXTENSIONS = {
+        "java", "class", "txt", "xml", "png", "html", "js", "conf", "log", "script", "jar", "md"
+    };
+    private static final long SEED = 0x5EEDL;
+}
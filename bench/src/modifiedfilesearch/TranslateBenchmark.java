@@ -0,0 +1,134 @@
+package modifiedfilesearch;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import modifiedfilesearch.data.DisplayString;
+import modifiedfilesearch.data.FileInfo;
+import modifiedfilesearch.data.FileInfoImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the per item cost of FileInfoTranslator, as used by the
+ * translate loop of the application, for a mix of files, directories and
+ * inaccessible entries.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TranslateBenchmark {
+
+    @Setup
+    public void setup() throws IOException {
+        searchStatusQueue = new ConcurrentLinkedQueue<DisplayString>();
+        infoQueue = new ConcurrentLinkedQueue<DisplayString>();
+        long now = System.currentTimeMillis();
+        translator = new FileInfoTranslator(searchStatusQueue, infoQueue,
+                new ModifiedTimeFilter(SearchCriteria.WEEK_WINDOW, now, false));
+        List<String> names = SyntheticTree.fileNames(ITEM_COUNT);
+        Random random = new Random(7);
+        infos = new FileInfo[ITEM_COUNT];
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            Path path = Paths.get("/home/user/project/src/main/java/module" + (i % 16),
+                    names.get(i));
+            int kind = random.nextInt(20);
+            BasicFileAttributes attrs = null;
+            if (kind > 0) {
+                long age = (long) (random.nextDouble() * 60 * 24 * SearchCriteria.MS_IN_HOUR);
+                attrs = new FixedAttributes(now - age, kind < 4);
+            }
+            infos[i] = new FileInfoImpl(path, attrs);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEM_COUNT)
+    public int translate() {
+        for (FileInfo info : infos) {
+            translator.translate(info);
+        }
+        int count = searchStatusQueue.size() + infoQueue.size();
+        searchStatusQueue.clear();
+        infoQueue.clear();
+        return count;
+    }
+
+    /**
+     * Attributes that do not require a file to exist.
+     */
+    private static class FixedAttributes implements BasicFileAttributes {
+
+        private FixedAttributes(long modified, boolean directory) {
+            this.modified = FileTime.fromMillis(modified);
+            this.directory = directory;
+        }
+
+        @Override
+        public FileTime lastModifiedTime() {
+            return modified;
+        }
+
+        @Override
+        public FileTime lastAccessTime() {
+            return modified;
+        }
+
+        @Override
+        public FileTime creationTime() {
+            return modified;
+        }
+
+        @Override
+        public boolean isRegularFile() {
+            return !directory;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        @Override
+        public boolean isSymbolicLink() {
+            return false;
+        }
+
+        @Override
+        public boolean isOther() {
+            return false;
+        }
+
+        @Override
+        public long size() {
+            return 0;
+        }
+
+        @Override
+        public Object fileKey() {
+            return null;
+        }
+        private final FileTime modified;
+        private final boolean directory;
+    }
+
+    private static final int ITEM_COUNT = 1024;
+    private Queue<DisplayString> searchStatusQueue;
+    private Queue<DisplayString> infoQueue;
+    private FileInfoTranslator translator;
+    private FileInfo[] infos;
+}
@@ -0,0 +1,232 @@
+package modifiedfilesearch;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipError;
+
+/**
+ * Walks the entries of zip, jar and war archives with the zip FileSystem
+ * provider. The provider reads the central directory of an archive when it
+ * is opened, and the attributes of every entry are read from it, so no
+ * entry is inflated unless its content is read. The provider is asked not
+ * to read the local header of each entry for its extended timestamps,
+ * which would seek through the whole archive.
+ * <p>
+ * Each entry is reported with the path it is displayed with, the path of
+ * the archive followed by "!" and the path of the entry, such as
+ * "/srv/app.war!/WEB-INF/web.xml". Archives nested in an archive are not
+ * opened, as the provider would inflate them.
+ *
+ * @since 1.7
+ */
+class ArchiveWalker {
+
+    private ArchiveWalker() {
+    }
+
+    /**
+     * Receives the entries of an archive.
+     */
+    interface EntryVisitor {
+
+        /**
+         * Invoked for each file entry of the archive.
+         *
+         * @param entry - Path of the entry within the archive's FileSystem,
+         * which may be used to read its content until the walk returns.
+         * @param displayPath - Path of the entry to report, in the
+         * FileSystem of the archive.
+         * @param attrs - Attributes of the entry.
+         * @return CONTINUE to keep walking, or TERMINATE to stop.
+         */
+        FileVisitResult visitEntry(Path entry, Path displayPath, BasicFileAttributes attrs);
+    }
+
+    /**
+     * @return flag indicating archives can be walked, as the zip FileSystem
+     * provider is installed.
+     */
+    static boolean isAvailable() {
+        return ZIP_PROVIDER != null;
+    }
+
+    /**
+     * Tells if a file is an archive by its extension.
+     *
+     * @param file - Path of the file.
+     * @return flag indicating the file is a zip, jar or war archive.
+     */
+    static boolean isArchive(Path file) {
+        Path name = file.getFileName();
+        if (name == null) {
+            return false;
+        }
+        String lowerName = name.toString().toLowerCase(Locale.ROOT);
+        for (String extension : ARCHIVE_EXTENSIONS) {
+            if (lowerName.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walks the file entries of an archive.
+     *
+     * @param archive - Path of the archive.
+     * @param visitor - EntryVisitor the entries are reported to.
+     * @throws IOException - If the archive could not be read, or is not a
+     * valid archive. A RuntimeException thrown by the visitor is rethrown as
+     * it is.
+     */
+    static void walk(Path archive, EntryVisitor visitor) throws IOException {
+        try {
+            walkEntries(archive, visitor);
+        } catch (VisitorException ve) {
+            throw ve.getCause();
+        } catch (ZipError ze) {
+            // Thrown by older providers for an archive that is not valid.
+            throw new IOException(archive + " is not a valid archive", ze);
+        } catch (RuntimeException re) {
+            // Thrown by the provider for a malformed archive, such as the
+            // IllegalArgumentException of a name not in the archive's charset.
+            throw new IOException(archive + " is not a valid archive", re);
+        }
+    }
+
+    private static void walkEntries(final Path archive, final EntryVisitor visitor)
+            throws IOException {
+        try (FileSystem fs = ZIP_PROVIDER.newFileSystem(archive, CENTRAL_DIRECTORY_ONLY)) {
+            final String archivePrefix = archive.toString() + "!";
+            for (Path root : fs.getRootDirectories()) {
+                Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path entry, BasicFileAttributes attrs) {
+                        Path displayPath;
+                        try {
+                            displayPath = archive.getFileSystem().getPath(
+                                    archivePrefix + entry.toString());
+                        } catch (InvalidPathException ipe) {
+                            // A name that cannot be displayed on this system.
+                            return FileVisitResult.CONTINUE;
+                        }
+                        try {
+                            return visitor.visitEntry(entry, displayPath,
+                                    new EntryAttributes(attrs));
+                        } catch (RuntimeException re) {
+                            // Kept apart from those thrown by the provider.
+                            throw new VisitorException(re);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Carries a RuntimeException thrown by the EntryVisitor out of the walk.
+     */
+    private static class VisitorException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private VisitorException(RuntimeException cause) {
+            super(cause);
+        }
+
+        @Override
+        public RuntimeException getCause() {
+            return (RuntimeException) super.getCause();
+        }
+    }
+
+    /**
+     * The attributes of an entry. Archives rarely record when an entry was
+     * created or last accessed, so the time it was last modified is
+     * reported instead of a null time.
+     */
+    private static class EntryAttributes implements BasicFileAttributes {
+
+        private EntryAttributes(BasicFileAttributes attrs) {
+            this.attrs = attrs;
+        }
+
+        @Override
+        public FileTime lastModifiedTime() {
+            return attrs.lastModifiedTime();
+        }
+
+        @Override
+        public FileTime lastAccessTime() {
+            FileTime time = attrs.lastAccessTime();
+            return time == null ? attrs.lastModifiedTime() : time;
+        }
+
+        @Override
+        public FileTime creationTime() {
+            FileTime time = attrs.creationTime();
+            return time == null ? attrs.lastModifiedTime() : time;
+        }
+
+        @Override
+        public boolean isRegularFile() {
+            return attrs.isRegularFile();
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return attrs.isDirectory();
+        }
+
+        @Override
+        public boolean isSymbolicLink() {
+            return attrs.isSymbolicLink();
+        }
+
+        @Override
+        public boolean isOther() {
+            return attrs.isOther();
+        }
+
+        @Override
+        public long size() {
+            return attrs.size();
+        }
+
+        @Override
+        public Object fileKey() {
+            return attrs.fileKey();
+        }
+        private final BasicFileAttributes attrs;
+    }
+
+    private static FileSystemProvider findZipProvider() {
+        for (FileSystemProvider provider : FileSystemProvider.installedProviders()) {
+            if ("jar".equalsIgnoreCase(provider.getScheme())) {
+                return provider;
+            }
+        }
+        return null;
+    }
+
+    private static final String[] ARCHIVE_EXTENSIONS = {".zip", ".jar", ".war"};
+    /**
+     * Stops the provider reading the local header of every entry for the
+     * times held by its extended timestamp, so only the central directory
+     * is read. Ignored by providers without the property.
+     */
+    private static final Map<String, ?> CENTRAL_DIRECTORY_ONLY =
+            Collections.singletonMap("zipinfo-time", "false");
+    private static final FileSystemProvider ZIP_PROVIDER = findZipProvider();
+}
@@ -0,0 +1,189 @@
+package modifiedfilesearch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import modifiedfilesearch.data.ContentChange;
+
+/**
+ * A persistent record of the content hashes of the files of a directory
+ * tree, keyed by path, size and modification time. A file whose size and
+ * modification time are those recorded is not read again; any other file is
+ * hashed and compared with the hash recorded for its path, which separates
+ * files whose content changed from files that were only touched.
+ * <p>
+ * Like SnapshotIndex, the hashes loaded are never modified; the hashes
+ * recorded during a search form the next record, written by save(). Files
+ * that are not hashed during a search, such as files outside its window, are
+ * therefore hashed again by the next search that includes them.
+ *
+ * @since 1.7
+ */
+class ContentHashCache {
+
+    /**
+     * Loads the hashes recorded by the last search of the directory
+     * specified. If there are none, or they cannot be read, every file will
+     * be hashed and reported as new.
+     *
+     * @param root - Root of the directory tree that will be searched.
+     * @return a ContentHashCache for the root.
+     */
+    static ContentHashCache load(Path root) {
+        ContentHashCache cache = new ContentHashCache(root);
+        try {
+            cache.read();
+        } catch (NoSuchFileException nsfe) {
+            // First hashed search of this root.
+        } catch (IOException ioe) {
+            System.err.println("Ignoring unreadable hash cache " + cache.cacheFile + ": "
+                    + ioe.getMessage());
+            cache.previous.clear();
+        }
+        return cache;
+    }
+
+    private ContentHashCache(Path root) {
+        this.root = root;
+        this.cacheFile = SnapshotIndex.storageFileFor(root, "hashes", ".hsh");
+        this.searchStarted = System.currentTimeMillis();
+    }
+
+    /**
+     * Reuses the hash recorded for a file whose size and modification time
+     * have not changed. Files whose modification time is too close to the
+     * start of the previous search are never reused, since a change made in
+     * the same clock tick would not alter the modification time.
+     *
+     * @param file - File being searched.
+     * @param attrs - Current attributes of the file.
+     * @return UNCHANGED if the recorded hash was reused, or null if the file
+     * must be hashed.
+     */
+    ContentChange lookup(Path file, BasicFileAttributes attrs) {
+        String key = relativize(file);
+        CachedHash cached = previous.get(key);
+        if (cached == null
+                || cached.size != attrs.size()
+                || cached.modified != attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS)
+                || attrs.lastModifiedTime().toMillis() >= previousSearchStarted - RACY_WINDOW_MS) {
+            return null;
+        }
+        next.put(key, cached);
+        return ContentChange.UNCHANGED;
+    }
+
+    /**
+     * Records the hash of a file in the next record and compares it with
+     * the hash previously recorded.
+     *
+     * @param file - File that was hashed.
+     * @param attrs - Attributes of the file when it was hashed.
+     * @param hash - Hash of the content of the file.
+     * @return NEW if no hash was recorded, CHANGED if the hash differs,
+     * otherwise TOUCHED, or UNCHANGED if the file was only hashed because
+     * its modification time was too recent to trust.
+     */
+    ContentChange update(Path file, BasicFileAttributes attrs, long hash) {
+        String key = relativize(file);
+        long modified = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        next.put(key, new CachedHash(attrs.size(), modified, hash));
+        CachedHash cached = previous.get(key);
+        if (cached == null) {
+            return ContentChange.NEW;
+        } else if (cached.hash != hash || cached.size != attrs.size()) {
+            return ContentChange.CHANGED;
+        }
+        return cached.modified == modified ? ContentChange.UNCHANGED : ContentChange.TOUCHED;
+    }
+
+    /**
+     * Writes the hashes recorded during the search, replacing the previous
+     * record. Should only be invoked after a complete search.
+     *
+     * @throws IOException - If the record could not be written.
+     */
+    void save() throws IOException {
+        Files.createDirectories(cacheFile.getParent());
+        Path tempFile = Files.createTempFile(cacheFile.getParent(), "hashes", ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(tempFile);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+                out.writeInt(MAGIC);
+                out.writeLong(searchStarted);
+                out.writeInt(next.size());
+                for (Map.Entry<String, CachedHash> entry : next.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    CachedHash cached = entry.getValue();
+                    out.writeLong(cached.size);
+                    out.writeLong(cached.modified);
+                    out.writeLong(cached.hash);
+                }
+            }
+            try {
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private void read() throws IOException {
+        try (InputStream is = Files.newInputStream(cacheFile);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(is))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a hash cache file");
+            }
+            previousSearchStarted = in.readLong();
+            int fileCount = in.readInt();
+            for (int i = 0; i < fileCount; i++) {
+                String file = in.readUTF();
+                previous.put(file, new CachedHash(in.readLong(), in.readLong(), in.readLong()));
+            }
+        }
+    }
+
+    private String relativize(Path file) {
+        return root.relativize(file).toString();
+    }
+
+    /**
+     * The size, modification time in nanoseconds and hash of a file.
+     */
+    private static class CachedHash {
+
+        private CachedHash(long size, long modified, long hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+        private final long size;
+        private final long modified;
+        private final long hash;
+    }
+
+    private static final int MAGIC = 0x4d465348;
+    private static final long RACY_WINDOW_MS = 2000;
+    private final Path root;
+    private final Path cacheFile;
+    private final long searchStarted;
+    private long previousSearchStarted;
+    private final Map<String, CachedHash> previous = new ConcurrentHashMap<String, CachedHash>();
+    private final Map<String, CachedHash> next = new ConcurrentHashMap<String, CachedHash>();
+}
@@ -0,0 +1,151 @@
+package modifiedfilesearch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Hashes the content of files with the 64 bit xxHash algorithm, which is
+ * fast enough that hashing is limited by reading the file rather than by
+ * the hash. Files are memory mapped a chunk at a time, except small files,
+ * which are cheaper to read into a buffer than to map.
+ * <p>
+ * The hash is not cryptographic; it detects changes, not tampering.
+ *
+ * @since 1.7
+ */
+final class ContentHasher {
+
+    private ContentHasher() {
+    }
+
+    /**
+     * Hashes the content of a file.
+     *
+     * @param file - Path of the file.
+     * @return the hash of the content.
+     * @throws IOException - If the file could not be read.
+     */
+    static long hash(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            State state = new State(size);
+            if (size < MAP_THRESHOLD) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // Read until full, or the file shrinks.
+                }
+                buffer.flip();
+                return state.finish(buffer.order(ByteOrder.LITTLE_ENDIAN));
+            }
+            long position = 0;
+            while (size - position > CHUNK_SIZE) {
+                ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, CHUNK_SIZE);
+                state.update(chunk.order(ByteOrder.LITTLE_ENDIAN));
+                position += CHUNK_SIZE;
+            }
+            ByteBuffer last = channel.map(FileChannel.MapMode.READ_ONLY, position, size - position);
+            return state.finish(last.order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    /**
+     * The accumulators of a hash in progress. Input is consumed in stripes
+     * of 32 bytes; only the final buffer may end with a partial stripe.
+     */
+    private static class State {
+
+        private State(long length) {
+            this.length = length;
+        }
+
+        /**
+         * Consumes every whole stripe of the buffer.
+         */
+        private void update(ByteBuffer buffer) {
+            int position = buffer.position();
+            int end = buffer.limit() - STRIPE_SIZE;
+            for (; position <= end; position += STRIPE_SIZE) {
+                v1 = round(v1, buffer.getLong(position));
+                v2 = round(v2, buffer.getLong(position + 8));
+                v3 = round(v3, buffer.getLong(position + 16));
+                v4 = round(v4, buffer.getLong(position + 24));
+            }
+            buffer.position(position);
+        }
+
+        /**
+         * Consumes the final buffer and returns the hash.
+         */
+        private long finish(ByteBuffer buffer) {
+            update(buffer);
+            long h;
+            if (length >= STRIPE_SIZE) {
+                h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+                        + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                h = merge(h, v1);
+                h = merge(h, v2);
+                h = merge(h, v3);
+                h = merge(h, v4);
+            } else {
+                h = PRIME5;
+            }
+            h += length;
+            int position = buffer.position();
+            int limit = buffer.limit();
+            for (; position + 8 <= limit; position += 8) {
+                h ^= round(0, buffer.getLong(position));
+                h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+            }
+            if (position + 4 <= limit) {
+                h ^= (buffer.getInt(position) & 0xFFFFFFFFL) * PRIME1;
+                h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+                position += 4;
+            }
+            for (; position < limit; position++) {
+                h ^= (buffer.get(position) & 0xFF) * PRIME5;
+                h = Long.rotateLeft(h, 11) * PRIME1;
+            }
+            h ^= h >>> 33;
+            h *= PRIME2;
+            h ^= h >>> 29;
+            h *= PRIME3;
+            h ^= h >>> 32;
+            return h;
+        }
+
+        private static long round(long acc, long input) {
+            acc += input * PRIME2;
+            acc = Long.rotateLeft(acc, 31);
+            return acc * PRIME1;
+        }
+
+        private static long merge(long h, long acc) {
+            h ^= round(0, acc);
+            return h * PRIME1 + PRIME4;
+        }
+        private final long length;
+        private long v1 = PRIME1 + PRIME2;
+        private long v2 = PRIME2;
+        private long v3 = 0;
+        private long v4 = -PRIME1;
+    }
+
+    /**
+     * Size of the chunks mapped, a multiple of the stripe size.
+     */
+    private static final long CHUNK_SIZE = 64L * 1024 * 1024;
+    /**
+     * Files smaller than this are read rather than mapped.
+     */
+    private static final long MAP_THRESHOLD = 16 * 1024;
+    private static final int STRIPE_SIZE = 32;
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+}
@@ -0,0 +1,318 @@
+package modifiedfilesearch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the lines of a file containing a literal string or a regular
+ * expression. Files are memory mapped rather than read through a stream, so
+ * the content is not copied onto the heap for a literal search, and only
+ * decoded a chunk at a time for a regular expression. Matching is thread
+ * safe, so files may be searched concurrently by the threads of a
+ * ParallelFileWalker.
+ * <p>
+ * Content is treated as UTF-8. Files that appear to be binary, because a
+ * NUL byte occurs near their start, and files larger than MAX_FILE_SIZE are
+ * not searched.
+ *
+ * @since 1.7
+ */
+abstract class ContentMatcher {
+
+    /**
+     * Compiles a matcher for a literal string, matched with case
+     * sensitivity.
+     *
+     * @param text - String to find, not empty.
+     * @return the matcher.
+     */
+    static ContentMatcher literal(String text) {
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("The text to find must not be empty");
+        }
+        return new LiteralMatcher(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Compiles a matcher for a regular expression. Flags such as (?i) may be
+     * embedded in the expression. ^ and $ match at the start and end of each
+     * line.
+     *
+     * @param regex - Regular expression to find.
+     * @return the matcher.
+     * @throws java.util.regex.PatternSyntaxException - If the expression is
+     * invalid.
+     */
+    static ContentMatcher regex(String regex) {
+        return new RegexMatcher(Pattern.compile(regex, Pattern.MULTILINE));
+    }
+
+    /**
+     * Finds the lines of a file that contain a match. At most
+     * MAX_LINES_REPORTED lines are reported.
+     *
+     * @param file - Path of the file.
+     * @return the line numbers, starting at 1, in ascending order. Empty if
+     * there is no match, or the file is not searched.
+     * @throws IOException - If the file could not be read.
+     */
+    int[] findMatchingLines(Path file) throws IOException {
+        if (file.getFileSystem() != FileSystems.getDefault()) {
+            return findMatchingEntryLines(file);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0 || size > MAX_FILE_SIZE) {
+                return NO_LINES;
+            }
+            MappedByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (isBinary(content)) {
+                return NO_LINES;
+            }
+            return findMatchingLines(content);
+        }
+    }
+
+    /**
+     * Finds the lines of a file of another FileSystem, such as an entry of
+     * an archive, which cannot be mapped. The content is read into memory,
+     * so a smaller size is searched.
+     */
+    private int[] findMatchingEntryLines(Path entry) throws IOException {
+        long size = Files.size(entry);
+        if (size == 0 || size > MAX_ENTRY_SIZE) {
+            return NO_LINES;
+        }
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(entry));
+        if (isBinary(content)) {
+            return NO_LINES;
+        }
+        return findMatchingLines(content);
+    }
+
+    /**
+     * Finds the lines of the content that contain a match.
+     *
+     * @param content - Content of the file, from position 0 to the limit.
+     * @return the line numbers, starting at 1, in ascending order.
+     */
+    abstract int[] findMatchingLines(ByteBuffer content);
+
+    private static boolean isBinary(ByteBuffer content) {
+        int end = Math.min(content.limit(), BINARY_CHECK_SIZE);
+        for (int i = 0; i < end; i++) {
+            if (content.get(i) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects line numbers, ignoring repeats of the last line added.
+     */
+    private static class LineList {
+
+        /**
+         * @return flag indicating no more lines should be added.
+         */
+        private boolean add(int line) {
+            if (size > 0 && lines[size - 1] == line) {
+                return false;
+            }
+            if (size == lines.length) {
+                lines = Arrays.copyOf(lines, lines.length * 2);
+            }
+            lines[size++] = line;
+            return size == MAX_LINES_REPORTED;
+        }
+
+        private int[] toArray() {
+            return size == 0 ? NO_LINES : Arrays.copyOf(lines, size);
+        }
+        private int[] lines = new int[8];
+        private int size;
+    }
+
+    /**
+     * Scans the mapped bytes for the UTF-8 encoding of the text, counting
+     * line feeds as it goes.
+     */
+    private static class LiteralMatcher extends ContentMatcher {
+
+        private LiteralMatcher(byte[] text) {
+            this.text = text;
+        }
+
+        @Override
+        int[] findMatchingLines(ByteBuffer content) {
+            LineList lines = new LineList();
+            int line = 1;
+            int end = content.limit() - text.length;
+            byte first = text[0];
+            int i = 0;
+            while (i <= end) {
+                byte b = content.get(i);
+                if (b == '\n') {
+                    line++;
+                } else if (b == first && matchesAt(content, i)) {
+                    if (lines.add(line)) {
+                        break;
+                    }
+                    // Further matches on this line need not be checked.
+                    while (i < end && content.get(i + 1) != '\n') {
+                        i++;
+                    }
+                }
+                i++;
+            }
+            return lines.toArray();
+        }
+
+        private boolean matchesAt(ByteBuffer content, int position) {
+            for (int j = 1; j < text.length; j++) {
+                if (content.get(position + j) != text[j]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        private final byte[] text;
+    }
+
+    /**
+     * Decodes the mapped bytes a chunk at a time and applies the Pattern to
+     * the whole lines of each chunk, so the characters held on the heap do
+     * not grow with the size of the file. A chunk grows to hold a long line,
+     * up to MAX_CHUNK_CHARS; a longer line is split across chunks. A match
+     * spanning the lines of two chunks is not found.
+     */
+    private static class RegexMatcher extends ContentMatcher {
+
+        private RegexMatcher(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        int[] findMatchingLines(ByteBuffer content) {
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            ByteBuffer bytes = content.duplicate();
+            bytes.position(0);
+            CharBuffer chunk = CharBuffer.allocate(Math.min(CHUNK_CHARS, bytes.limit() + 1));
+            LineList lines = new LineList();
+            int line = 1;
+            while (true) {
+                // Errors are replaced, so only UNDERFLOW, once every byte is
+                // decoded, and OVERFLOW, once the chunk is full, are returned.
+                decoder.decode(bytes, chunk, true);
+                boolean last = !bytes.hasRemaining() && !decoder.flush(chunk).isOverflow();
+                chunk.flip();
+                int end = chunk.limit();
+                if (!last) {
+                    // The partial last line is searched with the next chunk.
+                    int lineEnd = end - 1;
+                    while (lineEnd >= 0 && chunk.get(lineEnd) != '\n') {
+                        lineEnd--;
+                    }
+                    if (lineEnd >= 0) {
+                        end = lineEnd + 1;
+                    } else if (chunk.capacity() < MAX_CHUNK_CHARS) {
+                        CharBuffer larger = CharBuffer.allocate(
+                                Math.min(chunk.capacity() * 2, MAX_CHUNK_CHARS));
+                        chunk = larger.put(chunk);
+                        continue;
+                    }
+                }
+                line = findMatchingLines(chunk, end, line, lines);
+                if (line < 0 || last) {
+                    break;
+                }
+                chunk.position(end);
+                chunk.compact();
+            }
+            return lines.toArray();
+        }
+
+        /**
+         * Finds the lines that contain a match within a chunk.
+         *
+         * @param chunk - Characters decoded, starting at the start of a line.
+         * @param end - Number of characters of the chunk to search.
+         * @param line - Number of the line the chunk starts on.
+         * @param lines - LineList the lines found are added to.
+         * @return the number of the line following the characters searched,
+         * or -1 if no more lines should be added.
+         */
+        private int findMatchingLines(CharBuffer chunk, int end, int line, LineList lines) {
+            Matcher matcher = pattern.matcher(chunk);
+            matcher.region(0, end);
+            int counted = 0;
+            while (matcher.find()) {
+                int start = matcher.start();
+                for (; counted < start; counted++) {
+                    if (chunk.get(counted) == '\n') {
+                        line++;
+                    }
+                }
+                if (lines.add(line)) {
+                    return -1;
+                }
+                // Continue from the start of the next line.
+                int next = start;
+                while (next < end && chunk.get(next) != '\n') {
+                    next++;
+                }
+                if (next + 1 >= end) {
+                    break;
+                }
+                matcher.region(next + 1, end);
+            }
+            for (; counted < end; counted++) {
+                if (chunk.get(counted) == '\n') {
+                    line++;
+                }
+            }
+            return line;
+        }
+        private final Pattern pattern;
+    }
+
+    /**
+     * Files larger than this are not searched.
+     */
+    static final long MAX_FILE_SIZE = 256L * 1024 * 1024;
+    /**
+     * Entries of archives larger than this are not searched, as they are
+     * read into memory.
+     */
+    static final long MAX_ENTRY_SIZE = 16L * 1024 * 1024;
+    /**
+     * The most lines reported for a single file.
+     */
+    static final int MAX_LINES_REPORTED = 1000;
+    /**
+     * The characters decoded at a time for a regular expression.
+     */
+    private static final int CHUNK_CHARS = 64 * 1024;
+    /**
+     * The most characters decoded at a time, to hold a long line.
+     */
+    private static final int MAX_CHUNK_CHARS = 1024 * 1024;
+    private static final int BINARY_CHECK_SIZE = 8192;
+    private static final int[] NO_LINES = new int[0];
+}
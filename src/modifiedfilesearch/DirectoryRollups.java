@@ -0,0 +1,218 @@
+package modifiedfilesearch;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Totals the files of each directory as a walk completes its subtrees, so a
+ * search can show where files changed without keeping an entry per file or
+ * walking the tree a second time.
+ * <p>
+ * A Rollup is opened for each directory when it is visited. Files are
+ * counted in the Rollup of their directory; the walkers visit the entries of
+ * a directory on a single thread, so those counts are not shared. Once a
+ * subtree is complete its Rollup adds the totals of its children, which
+ * completed earlier, to its own and hands itself to its parent through a
+ * lock-free queue. Subtrees completing concurrently on different threads
+ * therefore only meet in the queue of their parent, and no lock is shared
+ * by the walk.
+ * <p>
+ * Only the initial walk is rolled up: once the root completes, directories
+ * walked again because a watched directory changed are ignored.
+ *
+ * @since 1.7
+ */
+class DirectoryRollups {
+
+    /**
+     * Opens the Rollup of a directory about to be walked. A directory whose
+     * parent is not open is the root of the walk.
+     *
+     * @param dir - Path of the directory.
+     */
+    void directoryOpened(Path dir) {
+        if (root != null) {
+            return;
+        }
+        Path parentDir = dir.getParent();
+        Rollup parent = parentDir == null ? null : open.get(parentDir);
+        if (parent == null && rootOpened) {
+            return;
+        }
+        rootOpened = true;
+        open.put(dir, new Rollup(dir, parent));
+    }
+
+    /**
+     * Counts a file in the Rollup of its directory. Files whose directory is
+     * not open, such as watched changes, are ignored.
+     *
+     * @param file - Path of the file.
+     * @param attrs - Attributes of the file.
+     * @param matched - Flag indicating the file matched the file types.
+     * @param modified - Flag indicating the file matched and was modified
+     * within the window searched.
+     */
+    void fileVisited(Path file, BasicFileAttributes attrs, boolean matched, boolean modified) {
+        Rollup rollup = open.get(file.getParent());
+        if (rollup == null) {
+            return;
+        }
+        rollup.files++;
+        rollup.bytes += attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        if (lastModified > rollup.newestModified) {
+            rollup.newestModified = lastModified;
+        }
+        if (matched) {
+            rollup.matched++;
+            if (modified) {
+                rollup.modified++;
+            }
+        }
+    }
+
+    /**
+     * Completes the Rollup of a directory whose subtree has been walked.
+     *
+     * @param dir - Path of the directory.
+     */
+    void directoryCompleted(Path dir) {
+        Rollup rollup = open.remove(dir);
+        if (rollup == null) {
+            return;
+        }
+        rollup.complete();
+        if (rollup.parent != null) {
+            rollup.parent.completedChildren.add(rollup);
+        } else {
+            root = rollup;
+        }
+    }
+
+    /**
+     * @return the Rollup of the root of the walk, or null if the walk has
+     * not completed.
+     */
+    Rollup getRoot() {
+        return root;
+    }
+
+    /**
+     * The totals of a directory and every directory beneath it. Once
+     * complete, a Rollup only keeps the children that contain matching
+     * files, sorted by name.
+     */
+    static class Rollup {
+
+        private Rollup(Path directory, Rollup parent) {
+            this.directory = directory;
+            this.parent = parent;
+        }
+
+        /**
+         * Adds the totals of the children to those of this directory. Every
+         * child has completed, and been queued, before the walker invokes
+         * postVisitDirectory for this directory.
+         */
+        private void complete() {
+            List<Rollup> kept = new ArrayList<Rollup>();
+            for (Rollup child : completedChildren) {
+                files += child.files;
+                matched += child.matched;
+                modified += child.modified;
+                bytes += child.bytes;
+                if (child.newestModified > newestModified) {
+                    newestModified = child.newestModified;
+                }
+                if (child.matched > 0) {
+                    kept.add(child);
+                }
+            }
+            Collections.sort(kept, BY_DIRECTORY);
+            children = Collections.unmodifiableList(kept);
+            completedChildren = null;
+        }
+
+        /**
+         * @return the Path of the directory.
+         */
+        Path getDirectory() {
+            return directory;
+        }
+
+        /**
+         * @return the number of files in the subtree.
+         */
+        long getFiles() {
+            return files;
+        }
+
+        /**
+         * @return the number of files in the subtree matching the file types.
+         */
+        long getMatched() {
+            return matched;
+        }
+
+        /**
+         * @return the number of matching files in the subtree modified within
+         * the window searched.
+         */
+        long getModified() {
+            return modified;
+        }
+
+        /**
+         * @return the total size of the files in the subtree, in bytes.
+         */
+        long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the last modified time of the newest file in the subtree, in
+         * milliseconds, or Long.MIN_VALUE if it has no files.
+         */
+        long getNewestModified() {
+            return newestModified;
+        }
+
+        /**
+         * @return the subdirectories containing matching files, sorted by
+         * name.
+         */
+        List<Rollup> getChildren() {
+            return children;
+        }
+
+        private final Path directory;
+        private final Rollup parent;
+        // Written by the thread walking the directory, then by the thread
+        // completing it, which has joined every thread that walked it.
+        private long files;
+        private long matched;
+        private long modified;
+        private long bytes;
+        private long newestModified = Long.MIN_VALUE;
+        private Queue<Rollup> completedChildren = new ConcurrentLinkedQueue<Rollup>();
+        private List<Rollup> children;
+    }
+
+    private static final Comparator<Rollup> BY_DIRECTORY = new Comparator<Rollup>() {
+        @Override
+        public int compare(Rollup o1, Rollup o2) {
+            return o1.directory.compareTo(o2.directory);
+        }
+    };
+    private final ConcurrentHashMap<Path, Rollup> open = new ConcurrentHashMap<Path, Rollup>();
+    private volatile boolean rootOpened;
+    private volatile Rollup root;
+}
@@ -0,0 +1,209 @@
+package modifiedfilesearch;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Watches the directories of a walked tree for changes and reports changed
+ * files to a FileVisitor, so a search can be kept current without walking
+ * the whole tree again.
+ * <p>
+ * Directories are registered as they are walked by wrapping the FileVisitor
+ * used for the walk with getRegisteringVisitor(). Once the walk finishes,
+ * watch() reports each created or modified file to visitFile, and walks
+ * each created directory. If events for a directory are lost, the subtree
+ * of that directory is walked again. Deletions are not reported.
+ *
+ * @since 1.7
+ */
+class DirectoryWatcher implements AutoCloseable {
+
+    /**
+     * Creates a watcher that reports changes to the FileVisitor specified.
+     *
+     * @param visitor - Thread safe FileVisitor that changes are reported to.
+     * @param walker - Walker used to walk created directories, and the
+     * subtrees of directories whose events were lost.
+     * @throws IOException - If a WatchService could not be created.
+     */
+    DirectoryWatcher(FileVisitor<Path> visitor, ParallelFileWalker walker) throws IOException {
+        this.visitor = visitor;
+        this.walker = walker;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.registeringVisitor = new RegisteringVisitor();
+    }
+
+    /**
+     * Provides a FileVisitor that registers each directory visited with this
+     * watcher before passing every callback to the FileVisitor provided in
+     * the constructor.
+     *
+     * @return the FileVisitor to walk the tree to be watched with.
+     */
+    FileVisitor<Path> getRegisteringVisitor() {
+        return registeringVisitor;
+    }
+
+    /**
+     * @return the number of directories that could not be watched, usually
+     * because a limit of the operating system has been reached.
+     */
+    int getRegistrationFailures() {
+        return registrationFailures.get();
+    }
+
+    /**
+     * Reports changes until the calling thread is interrupted or this watcher
+     * is closed.
+     *
+     * @throws IOException - If the FileVisitor throws an IOException.
+     * @throws InterruptedException - If the calling thread is interrupted.
+     */
+    void watch() throws IOException, InterruptedException {
+        try {
+            while (!watchedDirectories.isEmpty()) {
+                WatchKey key = watchService.take();
+                Path dir = watchedDirectories.get(key);
+                if (dir == null) {
+                    key.cancel();
+                    continue;
+                }
+                processEvents(dir, key);
+                if (!key.reset()) {
+                    // The directory was deleted or is no longer accessible.
+                    watchedDirectories.remove(key);
+                    watchedPaths.remove(dir);
+                }
+            }
+        } catch (ClosedWatchServiceException cwse) {
+            // Closed by another thread, stop watching.
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * Reports the changes pending for a watched directory. Several events for
+     * the same entry are reported once.
+     */
+    private void processEvents(Path dir, WatchKey key) throws IOException {
+        Set<Path> changed = new LinkedHashSet<Path>();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            WatchEvent.Kind<?> kind = event.kind();
+            if (kind == StandardWatchEventKinds.OVERFLOW) {
+                rescan(dir);
+                return;
+            } else if (kind == StandardWatchEventKinds.ENTRY_CREATE
+                    || kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+                changed.add(dir.resolve((Path) event.context()));
+            }
+        }
+        for (Path entry : changed) {
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(entry, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+            } catch (NoSuchFileException nsfe) {
+                // Deleted before it could be reported.
+                continue;
+            } catch (AccessDeniedException ade) {
+                visitor.visitFileFailed(entry, ade);
+                continue;
+            }
+            if (!attrs.isDirectory()) {
+                visitor.visitFile(entry, attrs);
+            } else if (!watchedPaths.contains(entry)) {
+                // A new directory, its entries may have been created before
+                // it could be registered.
+                rescan(entry);
+            }
+        }
+    }
+
+    /**
+     * Walks the subtree of a directory, registering any directory not
+     * already watched.
+     */
+    private void rescan(Path dir) throws IOException {
+        walker.walkFileTree(dir, registeringVisitor);
+    }
+
+    /**
+     * Registers directories with the WatchService before their entries are
+     * visited. A directory whose subtree the visitor skips is not watched.
+     */
+    private class RegisteringVisitor implements FileVisitor<Path> {
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+                throws IOException {
+            FileVisitResult result = visitor.preVisitDirectory(dir, attrs);
+            if (result != FileVisitResult.CONTINUE) {
+                return result;
+            }
+            if (watchedPaths.add(dir)) {
+                try {
+                    WatchKey key = dir.register(watchService,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE,
+                            StandardWatchEventKinds.ENTRY_MODIFY);
+                    watchedDirectories.put(key, dir);
+                } catch (IOException ioe) {
+                    // Still visit the directory, it will not be watched.
+                    watchedPaths.remove(dir);
+                    registrationFailures.incrementAndGet();
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                throws IOException {
+            return visitor.visitFile(file, attrs);
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc)
+                throws IOException {
+            return visitor.visitFileFailed(file, exc);
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException exc)
+                throws IOException {
+            return visitor.postVisitDirectory(dir, exc);
+        }
+    }
+    private final FileVisitor<Path> visitor;
+    private final FileVisitor<Path> registeringVisitor;
+    private final ParallelFileWalker walker;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories =
+            new ConcurrentHashMap<WatchKey, Path>();
+    private final Set<Path> watchedPaths =
+            Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+    private final AtomicInteger registrationFailures = new AtomicInteger();
+}
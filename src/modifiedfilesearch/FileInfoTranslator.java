@@ -0,0 +1,59 @@
+package modifiedfilesearch;
+
+import java.awt.Color;
+import java.util.Queue;
+import modifiedfilesearch.data.DisplayString;
+import modifiedfilesearch.data.FileInfo;
+import modifiedfilesearch.data.FileInfoDisplayString;
+
+/**
+ * Translates the FileInfo objects provided by the SpecifiedFileVisitor to
+ * DisplayStrings that can be rendered by the DisplayStringLayerUI. The path
+ * of each FileInfo is only turned into a String if it is displayed.
+ * Directories are shown in white, modified files in red and unmodified files
+ * in green. Files that could not be accessed are reported in orange to a
+ * separate queue.
+ *
+ * @since 1.7
+ */
+class FileInfoTranslator {
+
+    /**
+     * @param searchStatusQueue - Queue for the DisplayStrings of files and
+     * directories searched.
+     * @param infoQueue - Queue for the DisplayStrings of files and
+     * directories that could not be accessed.
+     * @param modifiedTimeFilter - Filter deciding which files are modified.
+     */
+    FileInfoTranslator(Queue<DisplayString> searchStatusQueue,
+            Queue<DisplayString> infoQueue, ModifiedTimeFilter modifiedTimeFilter) {
+        this.searchStatusQueue = searchStatusQueue;
+        this.infoQueue = infoQueue;
+        this.modifiedTimeFilter = modifiedTimeFilter;
+    }
+
+    /**
+     * Adds a DisplayString for the FileInfo to the appropriate queue.
+     * @param info - FileInfo to be translated.
+     */
+    void translate(FileInfo info) {
+        Color color;
+        if (info.getBasicFileAttributes() != null) {
+            if (info.getBasicFileAttributes().isDirectory()) {
+                color = Color.WHITE;
+            } else {
+                if (modifiedTimeFilter.isModified(info.getBasicFileAttributes())) {
+                    color = Color.RED;
+                } else {
+                    color = Color.GREEN;
+                }
+            }
+            searchStatusQueue.add(new FileInfoDisplayString("", info, color));
+        } else {
+            infoQueue.add(new FileInfoDisplayString("Could not access ", info, Color.ORANGE));
+        }
+    }
+    private final Queue<DisplayString> searchStatusQueue;
+    private final Queue<DisplayString> infoQueue;
+    private final ModifiedTimeFilter modifiedTimeFilter;
+}
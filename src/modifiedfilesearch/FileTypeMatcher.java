@@ -0,0 +1,191 @@
+package modifiedfilesearch;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Matches the file name of a Path against a syntax and pattern, such as the
+ * glob built by SearchCriteria.buildGlob. A glob that only lists extensions,
+ * such as "glob:*.{java,xml}", is matched by looking up the end of the path
+ * in a precomputed hash table, without creating a Path for the file name or
+ * running a regular expression. Any other pattern is matched by the
+ * PathMatcher of the default FileSystem.
+ *
+ * @since 1.7
+ */
+abstract class FileTypeMatcher {
+
+    /**
+     * Compiles a matcher that matches extensions with the case sensitivity
+     * of the platform's glob matching.
+     *
+     * @param syntaxAndPattern - Syntax and pattern, see
+     * FileSystem.getPathMatcher.
+     * @return the matcher.
+     */
+    static FileTypeMatcher compile(String syntaxAndPattern) {
+        return compile(syntaxAndPattern, IS_CASE_SENSITIVE_PLATFORM);
+    }
+
+    /**
+     * Compiles a matcher.
+     *
+     * @param syntaxAndPattern - Syntax and pattern, see
+     * FileSystem.getPathMatcher.
+     * @param caseSensitive - Flag to match extensions with case sensitivity.
+     * This has no effect on patterns that are not pure extension lists.
+     * @return the matcher.
+     */
+    static FileTypeMatcher compile(String syntaxAndPattern, boolean caseSensitive) {
+        String[] extensions = parseExtensions(syntaxAndPattern);
+        if (extensions != null) {
+            return new ExtensionMatcher(extensions, caseSensitive);
+        }
+        return new GlobMatcher(FileSystems.getDefault().getPathMatcher(syntaxAndPattern));
+    }
+
+    /**
+     * Tells if the file name of a Path matches.
+     *
+     * @param file - Path of the file.
+     * @return flag indicating the file name matches.
+     */
+    abstract boolean matches(Path file);
+
+    /**
+     * Extracts the extensions of a glob of the form "glob:*.ext" or
+     * "glob:*.{ext1,ext2}".
+     *
+     * @return the extensions, or null if the pattern has any other form.
+     */
+    private static String[] parseExtensions(String syntaxAndPattern) {
+        if (!syntaxAndPattern.startsWith(EXTENSION_GLOB_PREFIX)) {
+            return null;
+        }
+        String list = syntaxAndPattern.substring(EXTENSION_GLOB_PREFIX.length());
+        if (list.startsWith("{") && list.endsWith("}")) {
+            list = list.substring(1, list.length() - 1);
+        } else if (list.indexOf(',') >= 0) {
+            return null;
+        }
+        String[] extensions = list.split(",", -1);
+        for (String extension : extensions) {
+            if (extension.isEmpty()) {
+                return null;
+            }
+            for (int i = 0; i < extension.length(); i++) {
+                if (GLOB_SPECIAL_CHARS.indexOf(extension.charAt(i)) >= 0
+                        || extension.charAt(i) == File.separatorChar) {
+                    return null;
+                }
+            }
+        }
+        return extensions;
+    }
+
+    /**
+     * Matches extensions with an open addressing hash table. For each
+     * distinct extension length, the characters at the end of the path are
+     * hashed in place and looked up.
+     */
+    private static class ExtensionMatcher extends FileTypeMatcher {
+
+        private ExtensionMatcher(String[] extensions, boolean caseSensitive) {
+            this.caseSensitive = caseSensitive;
+            int size = Integer.highestOneBit(Math.max(extensions.length, 1) * 4);
+            this.table = new String[size];
+            this.mask = size - 1;
+            List<Integer> lengthList = new ArrayList<Integer>();
+            for (String extension : extensions) {
+                if (!lengthList.contains(extension.length())) {
+                    lengthList.add(extension.length());
+                }
+                int slot = hash(extension, 0, extension.length()) & mask;
+                while (table[slot] != null && !equal(table[slot], extension, 0)) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = extension;
+            }
+            this.lengths = new int[lengthList.size()];
+            for (int i = 0; i < lengths.length; i++) {
+                lengths[i] = lengthList.get(i);
+            }
+            Arrays.sort(lengths);
+        }
+
+        @Override
+        boolean matches(Path file) {
+            // The string of a Path is computed once and retained by the Path.
+            String path = file.toString();
+            int end = path.length();
+            int nameStart = end;
+            while (nameStart > 0 && path.charAt(nameStart - 1) != '/'
+                    && path.charAt(nameStart - 1) != File.separatorChar) {
+                nameStart--;
+            }
+            for (int length : lengths) {
+                int start = end - length;
+                if (start - 1 < nameStart) {
+                    break;
+                }
+                if (path.charAt(start - 1) != '.') {
+                    continue;
+                }
+                int slot = hash(path, start, end) & mask;
+                while (table[slot] != null) {
+                    if (equal(table[slot], path, start)) {
+                        return true;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+            }
+            return false;
+        }
+
+        private int hash(String str, int start, int end) {
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                char ch = str.charAt(i);
+                h = 31 * h + (caseSensitive ? ch : Character.toLowerCase(ch));
+            }
+            return h ^ (h >>> 16);
+        }
+
+        private boolean equal(String extension, String str, int start) {
+            return str.regionMatches(!caseSensitive, start, extension, 0, extension.length());
+        }
+        private final boolean caseSensitive;
+        private final String[] table;
+        private final int mask;
+        private final int[] lengths;
+    }
+
+    /**
+     * Matches the file name with a PathMatcher.
+     */
+    private static class GlobMatcher extends FileTypeMatcher {
+
+        private GlobMatcher(PathMatcher matcher) {
+            this.matcher = matcher;
+        }
+
+        @Override
+        boolean matches(Path file) {
+            Path fileName = file.getFileName();
+            return fileName != null && matcher.matches(fileName);
+        }
+        private final PathMatcher matcher;
+    }
+
+    /**
+     * Glob matching is case insensitive on Windows.
+     */
+    static final boolean IS_CASE_SENSITIVE_PLATFORM = File.separatorChar != '\\';
+    private static final String EXTENSION_GLOB_PREFIX = "glob:*.";
+    private static final String GLOB_SPECIAL_CHARS = "*?[]{}\\,/";
+}
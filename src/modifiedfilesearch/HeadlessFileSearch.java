@@ -0,0 +1,389 @@
+package modifiedfilesearch;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import modifiedfilesearch.data.FileInfo;
+import modifiedfilesearch.output.ExportFormat;
+import modifiedfilesearch.output.ResultExporter;
+
+/**
+ * A command line application that searches a directory for modified files
+ * and streams the results to standard output, or to a file, as they are
+ * found. Unlike
+ * ModifiedFileSearch, this application does not load any AWT or Swing
+ * classes, so it may be run on servers without a display.
+ * <p>
+ * Usage: HeadlessFileSearch [options] directory
+ * <pre>
+ *   -t, --types types       file types to search, default "*.java *.xml *.conf *.script"
+ *   -w, --window window     ever, 30days, week or hour, default ever
+ *   -m, --modified-only     only report modified files, and files that could
+ *                           not be accessed
+ *   -g, --grep text         only report modified files containing text, with
+ *                           the lines it is found on
+ *   -E, --regex             treat the text given to --grep as a regular
+ *                           expression
+ *   -n, --newest n          only report the n most recently modified files,
+ *                           once the walk ends, and again whenever a watched
+ *                           change alters them
+ *   -r, --rollup            once the walk ends, print the modified, matching
+ *                           and total files, total bytes and newest file of
+ *                           each directory containing matching files to
+ *                           standard error
+ *   -f, --format format     ndjson, csv or binary, default ndjson, or the
+ *                           format given by the extension of the output file
+ *   -o, --output file       write the results to file rather than standard
+ *                           output
+ *   -x, --exclude patterns  skip entries matching any of the patterns, in the
+ *                           format of .gitignore lines, such as
+ *                           ".git node_modules target/"
+ *   -I, --gitignore         also skip entries ignored by the .gitignore files
+ *                           found during the walk
+ *   -p, --parallelism n     number of threads used to walk the directory
+ *   -R, --remote            walk with a thread per directory, for network file
+ *                           systems where each listing waits on the server
+ *   -i, --index             reuse attributes of unchanged directories recorded
+ *                           by the previous indexed search of the directory
+ *   -H, --hash              hash the content of files reported, reporting
+ *                           whether it changed since the previous hashed search
+ *   -a, --archives          also search the entries of zip, jar and war
+ *                           archives, reported as archive!/entry
+ *   -W, --watch             after the search, report changed files until killed
+ *   -c, --case-sensitive    match file types with case sensitivity
+ *   -C, --ignore-case       match file types without case sensitivity; the
+ *                           default depends on the platform
+ * </pre>
+ *
+ * @since 1.7
+ */
+class HeadlessFileSearch {
+
+    /**
+     * @param criteria - SearchCriteria of the search.
+     * @param parallelism - Number of threads used to walk the directory.
+     */
+    private HeadlessFileSearch(SearchCriteria criteria, int parallelism) {
+        this.criteria = criteria;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Runs the search on a SearchEngine while this thread waits. Output is
+     * flushed whenever the walk has nothing new to report, so results reach
+     * the consumer as they are found.
+     *
+     * @param exporter - ResultExporter the results are written to.
+     * @return flag indicating the walk completed without error.
+     */
+    private boolean search(final ResultExporter exporter)
+            throws IOException, InterruptedException {
+        SearchEngine engine = new SearchEngine(parallelism, 1);
+        engine.getMetrics().register("headless");
+        try {
+            final ModifiedTimeFilter modifiedTimeFilter = criteria.getModifiedTimeFilter();
+            SearchEngine.Search search = engine.start(criteria, null,
+                    new SearchEngine.SearchListener() {
+
+                @Override
+                public void resultsFound(List<FileInfo> batch, boolean more) throws IOException {
+                    export(batch);
+                    if (!more) {
+                        exporter.flush();
+                    }
+                }
+
+                @Override
+                public void newestFilesFound(List<FileInfo> newest, boolean complete)
+                        throws IOException {
+                    // Previews are not reported, since they would be repeated.
+                    if (complete) {
+                        export(newest);
+                        exporter.flush();
+                    }
+                }
+
+                private void export(List<FileInfo> infos) throws IOException {
+                    for (FileInfo info : infos) {
+                        boolean modified = info.getBasicFileAttributes() != null
+                                && !info.getBasicFileAttributes().isDirectory()
+                                && modifiedTimeFilter.isModified(info.getBasicFileAttributes());
+                        exporter.export(info, modified);
+                    }
+                }
+
+                @Override
+                public void directoryRollupsFound(DirectoryRollups.Rollup root) {
+                    printRollups(root);
+                }
+
+                @Override
+                public void initialWalkFinished(int unwatchedDirectories) {
+                    if (unwatchedDirectories > 0) {
+                        System.err.println("Could not watch " + unwatchedDirectories
+                                + " directories");
+                    }
+                }
+
+                @Override
+                public void searchFinished(IOException failure) {
+                }
+            });
+            search.await();
+            exporter.close();
+            walkFailure = search.getFailure();
+            return walkFailure == null;
+        } finally {
+            engine.getMetrics().unregister();
+            engine.shutdown();
+        }
+    }
+
+    /**
+     * Prints a Rollup and those beneath it to standard error as a tree, with
+     * the columns modified, matched, files, bytes and newest.
+     */
+    private static void printRollups(DirectoryRollups.Rollup root) {
+        StringBuilder builder = new StringBuilder(String.format("%10s %10s %10s %16s  %-19s  %s%n",
+                "modified", "matched", "files", "bytes", "newest", "directory"));
+        appendRollup(builder, root, root.getDirectory().toString(), 0,
+                new SimpleDateFormat(ROLLUP_DATE_FORMAT));
+        System.err.print(builder);
+        System.err.flush();
+    }
+
+    private static void appendRollup(StringBuilder builder, DirectoryRollups.Rollup rollup,
+            String name, int depth, DateFormat dateFormat) {
+        String newest = rollup.getNewestModified() == Long.MIN_VALUE ? "-"
+                : dateFormat.format(new Date(rollup.getNewestModified()));
+        builder.append(String.format("%,10d %,10d %,10d %,16d  %-19s  ",
+                rollup.getModified(), rollup.getMatched(), rollup.getFiles(),
+                rollup.getBytes(), newest));
+        for (int i = 0; i < depth; i++) {
+            builder.append("  ");
+        }
+        builder.append(name).append(System.lineSeparator());
+        for (DirectoryRollups.Rollup child : rollup.getChildren()) {
+            appendRollup(builder, child, child.getDirectory().getFileName().toString(),
+                    depth + 1, dateFormat);
+        }
+    }
+
+    public static void main(String[] args) {
+        String types = DEFAULT_TYPES;
+        long window = SearchCriteria.EVER_WINDOW;
+        boolean modifiedOnly = false;
+        ExportFormat format = null;
+        Path output = null;
+        String grep = null;
+        boolean regex = false;
+        ContentMatcher contentMatcher = null;
+        List<String> excludePatterns = new ArrayList<String>();
+        boolean readIgnoreFiles = false;
+        SubtreeExclusions exclusions = null;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        boolean threadPerDirectory = false;
+        int newestLimit = 0;
+        boolean rollUp = false;
+        boolean useIndex = false;
+        boolean hashContent = false;
+        boolean searchArchives = false;
+        boolean watch = false;
+        boolean caseSensitive = FileTypeMatcher.IS_CASE_SENSITIVE_PLATFORM;
+        Path root = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-t") || arg.equals("--types")) {
+                    types = argumentValue(args, ++i, arg);
+                } else if (arg.equals("-w") || arg.equals("--window")) {
+                    window = parseWindow(argumentValue(args, ++i, arg));
+                } else if (arg.equals("-m") || arg.equals("--modified-only")) {
+                    modifiedOnly = true;
+                } else if (arg.equals("-n") || arg.equals("--newest")) {
+                    newestLimit = Integer.parseInt(argumentValue(args, ++i, arg));
+                    if (newestLimit < 1) {
+                        throw new IllegalArgumentException("The number of files must be positive");
+                    }
+                } else if (arg.equals("-r") || arg.equals("--rollup")) {
+                    rollUp = true;
+                } else if (arg.equals("-f") || arg.equals("--format")) {
+                    format = ExportFormat.forName(argumentValue(args, ++i, arg));
+                } else if (arg.equals("-o") || arg.equals("--output")) {
+                    output = Paths.get(argumentValue(args, ++i, arg));
+                } else if (arg.equals("-g") || arg.equals("--grep")) {
+                    grep = argumentValue(args, ++i, arg);
+                } else if (arg.equals("-E") || arg.equals("--regex")) {
+                    regex = true;
+                } else if (arg.equals("-x") || arg.equals("--exclude")) {
+                    excludePatterns.addAll(
+                            SearchCriteria.splitExclusions(argumentValue(args, ++i, arg)));
+                } else if (arg.equals("-I") || arg.equals("--gitignore")) {
+                    readIgnoreFiles = true;
+                } else if (arg.equals("-p") || arg.equals("--parallelism")) {
+                    parallelism = Integer.parseInt(argumentValue(args, ++i, arg));
+                    if (parallelism < 1) {
+                        throw new IllegalArgumentException("Parallelism must be positive");
+                    }
+                } else if (arg.equals("-R") || arg.equals("--remote")) {
+                    threadPerDirectory = true;
+                } else if (arg.equals("-i") || arg.equals("--index")) {
+                    useIndex = true;
+                } else if (arg.equals("-H") || arg.equals("--hash")) {
+                    hashContent = true;
+                } else if (arg.equals("-a") || arg.equals("--archives")) {
+                    searchArchives = true;
+                } else if (arg.equals("-W") || arg.equals("--watch")) {
+                    watch = true;
+                } else if (arg.equals("-c") || arg.equals("--case-sensitive")) {
+                    caseSensitive = true;
+                } else if (arg.equals("-C") || arg.equals("--ignore-case")) {
+                    caseSensitive = false;
+                } else if (arg.startsWith("-")) {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                } else if (root == null) {
+                    root = Paths.get(arg);
+                } else {
+                    throw new IllegalArgumentException("Only one directory may be searched");
+                }
+            }
+            if (root == null) {
+                throw new IllegalArgumentException("A directory to search is required");
+            } else if (!Files.isDirectory(root)) {
+                throw new IllegalArgumentException(root + " is not a directory");
+            } else if (types.trim().isEmpty()) {
+                throw new IllegalArgumentException("Please enter a file type to search");
+            } else if (regex && grep == null) {
+                throw new IllegalArgumentException("--regex requires --grep");
+            } else if (searchArchives && !ArchiveWalker.isAvailable()) {
+                throw new IllegalArgumentException("--archives requires the zip file system");
+            }
+            if (grep != null) {
+                // Throws a PatternSyntaxException, an IllegalArgumentException,
+                // for an invalid expression.
+                contentMatcher = regex ? ContentMatcher.regex(grep) : ContentMatcher.literal(grep);
+            }
+            if (!excludePatterns.isEmpty() || readIgnoreFiles) {
+                // Throws an IllegalArgumentException for an invalid pattern.
+                exclusions = new SubtreeExclusions(root, excludePatterns, readIgnoreFiles);
+            }
+            if (format == null) {
+                format = output == null ? ExportFormat.NDJSON : ExportFormat.forFile(output);
+            }
+        } catch (IllegalArgumentException e) {
+            // Includes the InvalidPathException thrown for a malformed directory.
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        SearchCriteria criteria = new SearchCriteria(root,
+                FileTypeMatcher.compile(SearchCriteria.buildGlob(types), caseSensitive),
+                new ModifiedTimeFilter(window, System.currentTimeMillis(), modifiedOnly));
+        criteria.setContentMatcher(contentMatcher);
+        criteria.setExclusions(exclusions);
+        criteria.setNewestLimit(newestLimit);
+        criteria.setRollUp(rollUp);
+        criteria.setThreadPerDirectory(threadPerDirectory);
+        criteria.setUseIndex(useIndex);
+        criteria.setHashContent(hashContent);
+        criteria.setSearchArchives(searchArchives);
+        criteria.setWatch(watch);
+        HeadlessFileSearch search = new HeadlessFileSearch(criteria, parallelism);
+        boolean completed;
+        try (ResultExporter exporter = output == null
+                ? ResultExporter.open(new FileOutputStream(FileDescriptor.out).getChannel(),
+                        format, contentMatcher != null, hashContent)
+                : ResultExporter.open(output, format, contentMatcher != null, hashContent)) {
+            completed = search.search(exporter);
+        } catch (IOException | InterruptedException e) {
+            System.err.println(e.getMessage());
+            completed = false;
+        }
+        if (search.walkFailure != null) {
+            System.err.println(search.walkFailure.getMessage());
+        }
+        if (modifiedOnly) {
+            System.err.println(criteria.getModifiedTimeFilter().getUnmodifiedCount()
+                    + " unmodified files not reported");
+        }
+        System.exit(completed ? 0 : 1);
+    }
+
+    private static String argumentValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static long parseWindow(String window) {
+        switch (window) {
+            case "ever":
+                return SearchCriteria.EVER_WINDOW;
+            case "30days":
+                return SearchCriteria.THIRTY_DAY_WINDOW;
+            case "week":
+                return SearchCriteria.WEEK_WINDOW;
+            case "hour":
+                return SearchCriteria.HOUR_WINDOW;
+            default:
+                throw new IllegalArgumentException("Unknown window " + window);
+        }
+    }
+
+    private static final String ROLLUP_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    private static final String DEFAULT_TYPES = "*.java *.xml *.conf *.script";
+    private static final String USAGE =
+            "Usage: HeadlessFileSearch [options] directory\n"
+            + "  -t, --types types       file types to search, default \"" + DEFAULT_TYPES + "\"\n"
+            + "  -w, --window window     ever, 30days, week or hour, default ever\n"
+            + "  -m, --modified-only     only report modified files, and files that could\n"
+            + "                          not be accessed\n"
+            + "  -g, --grep text         only report modified files containing text, with\n"
+            + "                          the lines it is found on\n"
+            + "  -E, --regex             treat the text given to --grep as a regular\n"
+            + "                          expression\n"
+            + "  -n, --newest n          only report the n most recently modified files,\n"
+            + "                          once the walk ends, and again whenever a watched\n"
+            + "                          change alters them\n"
+            + "  -r, --rollup            once the walk ends, print the modified, matching\n"
+            + "                          and total files, total bytes and newest file of\n"
+            + "                          each directory containing matching files to\n"
+            + "                          standard error\n"
+            + "  -f, --format format     ndjson, csv or binary, default ndjson, or the\n"
+            + "                          format given by the extension of the output file\n"
+            + "  -o, --output file       write the results to file rather than standard\n"
+            + "                          output\n"
+            + "  -x, --exclude patterns  skip entries matching any of the patterns, in the\n"
+            + "                          format of .gitignore lines, such as\n"
+            + "                          \".git node_modules target/\"\n"
+            + "  -I, --gitignore         also skip entries ignored by the .gitignore files\n"
+            + "                          found during the walk\n"
+            + "  -p, --parallelism n     number of threads used to walk the directory\n"
+            + "  -R, --remote            walk with a thread per directory, for network file\n"
+            + "                          systems where each listing waits on the server\n"
+            + "  -i, --index             reuse attributes of unchanged directories recorded\n"
+            + "                          by the previous indexed search of the directory\n"
+            + "  -H, --hash              hash the content of files reported, reporting\n"
+            + "                          whether it changed since the previous hashed search\n"
+            + "  -a, --archives          also search the entries of zip, jar and war\n"
+            + "                          archives, reported as archive!/entry\n"
+            + "  -W, --watch             after the search, report changed files until killed\n"
+            + "  -c, --case-sensitive    match file types with case sensitivity\n"
+            + "  -C, --ignore-case       match file types without case sensitivity; the\n"
+            + "                          default depends on the platform";
+    private final SearchCriteria criteria;
+    private final int parallelism;
+    private volatile IOException walkFailure;
+}
@@ -7,24 +7,31 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
 import java.util.Queue;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ThreadFactory;
+import java.util.regex.PatternSyntaxException;
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.tree.DefaultMutableTreeNode;
 import modifiedfilesearch.data.DisplayStringImpl;
 import modifiedfilesearch.data.DisplayString;
 import modifiedfilesearch.data.FileInfo;
+import modifiedfilesearch.data.ResultStore;
+import modifiedfilesearch.metrics.SearchMetrics;
+import modifiedfilesearch.output.ExportFormat;
+import modifiedfilesearch.output.ResultExporter;
 import modifiedfilesearch.ui.DisplayStringLayerUI;
 import modifiedfilesearch.ui.DirectoryEntryLayerUI;
-import modifiedfilesearch.utils.NamedThreadFactory;
 
 /**
  * A graphical application that searches directories for modified files and
@@ -42,9 +49,8 @@ class ModifiedFileSearch implements ActionListener {
     private ModifiedFileSearch() {
         searchStatusQueue = new ConcurrentLinkedQueue<DisplayString>();
         infoQueue = new ConcurrentLinkedQueue<DisplayString>();
-        fileInfoQueue = new ConcurrentLinkedQueue<FileInfo>();
-        fileWalkThreadFactory = new NamedThreadFactory("file-walk");
-        translateThreadFactory = new NamedThreadFactory("translate-file-info");
+        searchEngine = new SearchEngine(WALK_PARALLELISM, MAX_CONCURRENT_SEARCHES);
+        searchEngine.getMetrics().register("gui");
     }
 
     /**
@@ -92,6 +98,30 @@ class ModifiedFileSearch implements ActionListener {
         fileTypeTF = new JTextField("*.java *.xml *.conf *.script");
         fileTypeTF.setPreferredSize(new Dimension(120, 20));
         fileTypeTF.setToolTipText("Enter '*.*' to search all files");
+        JLabel contentLabel = new JLabel("Containing text:");
+        contentLabel.setPreferredSize(new Dimension(180, 20));
+        contentTF = new JTextField();
+        contentTF.setPreferredSize(new Dimension(120, 20));
+        contentTF.setToolTipText("Leave empty to show files whatever they contain. "
+                + "Only modified files are searched.");
+        regexCheckBox = new JCheckBox("Regular expression");
+
+        JLabel exportLabel = new JLabel("Export results to:");
+        exportLabel.setPreferredSize(new Dimension(180, 20));
+        exportTF = new JTextField();
+        exportTF.setPreferredSize(new Dimension(120, 20));
+        exportTF.setToolTipText("Leave empty to not export. The file is written as "
+                + "CSV, NDJSON or binary for the extensions .csv, .ndjson and .mfsr.");
+
+        JLabel excludeLabel = new JLabel("Skip entries matching:");
+        excludeLabel.setPreferredSize(new Dimension(180, 20));
+        excludeTF = new JTextField();
+        excludeTF.setPreferredSize(new Dimension(120, 20));
+        excludeTF.setToolTipText("Patterns in the format of .gitignore lines, separated by "
+                + "spaces, such as \".git node_modules target/\". Skipped directories "
+                + "are not read.");
+        gitignoreCheckBox = new JCheckBox("Skip entries ignored by .gitignore files");
+
         JLabel modParameterLabel = new JLabel("Search for files modified since:");
 
         everButton = new JRadioButton("Ever");
@@ -111,6 +141,31 @@ class ModifiedFileSearch implements ActionListener {
         modifiedPanel.add(weekButton);
         modifiedPanel.add(hourButton);
 
+        indexCheckBox = new JCheckBox("Reuse index of previous search");
+        indexCheckBox.setToolTipText("Unchanged directories are not read again. "
+                + "Files edited in place may not be detected.");
+        remoteCheckBox = new JCheckBox("Directory is on a network file system");
+        remoteCheckBox.setToolTipText("Many directories are listed at once, to hide the "
+                + "time each listing waits on the server.");
+        hashCheckBox = new JCheckBox("Compare content with previous search");
+        hashCheckBox.setToolTipText("Files are hashed to tell content changes from "
+                + "files that were only touched. Unchanged files are not read again.");
+        archiveCheckBox = new JCheckBox("Search inside zip, jar and war archives");
+        archiveCheckBox.setToolTipText("Entries are listed as archive!/entry. Archives "
+                + "are opened alongside the search.");
+        archiveCheckBox.setEnabled(ArchiveWalker.isAvailable());
+        watchCheckBox = new JCheckBox("Watch for changes after search");
+        modifiedOnlyCheckBox = new JCheckBox("Only show modified files");
+        newestCheckBox = new JCheckBox("Only show the newest");
+        newestCheckBox.setToolTipText("Only the most recently modified files are kept, "
+                + "and listed on the left as the search runs.");
+        newestSpinner = new JSpinner(new SpinnerNumberModel(DEFAULT_NEWEST_LIMIT, 1,
+                MAX_NEWEST_LIMIT, 10));
+        newestSpinner.setMaximumSize(new Dimension(80, 20));
+        rollupCheckBox = new JCheckBox("Summarize changes by directory");
+        rollupCheckBox.setToolTipText("Once the search ends, the directories containing "
+                + "matching files are shown on the left with their totals.");
+
         modifiedButton = new JButton("Search for Modifications");
         modifiedButton.setActionCommand(SEARCH_COMMAND);
         modifiedButton.addActionListener(this);
@@ -131,6 +186,37 @@ class ModifiedFileSearch implements ActionListener {
         typeBox.add(Box.createHorizontalStrut(5));
         typeBox.add(fileTypeTF);
         outerBox.add(typeBox);
+        outerBox.add(Box.createVerticalStrut(5));
+        final Box contentBox = Box.createHorizontalBox();
+        contentBox.add(Box.createHorizontalStrut(5));
+        contentBox.add(contentLabel);
+        contentBox.add(Box.createHorizontalStrut(5));
+        contentBox.add(contentTF);
+        outerBox.add(contentBox);
+        final Box regexBox = Box.createHorizontalBox();
+        regexBox.add(Box.createHorizontalStrut(5));
+        regexBox.add(regexCheckBox);
+        regexBox.add(Box.createHorizontalGlue());
+        outerBox.add(regexBox);
+        outerBox.add(Box.createVerticalStrut(5));
+        final Box exportBox = Box.createHorizontalBox();
+        exportBox.add(Box.createHorizontalStrut(5));
+        exportBox.add(exportLabel);
+        exportBox.add(Box.createHorizontalStrut(5));
+        exportBox.add(exportTF);
+        outerBox.add(exportBox);
+        outerBox.add(Box.createVerticalStrut(5));
+        final Box excludeBox = Box.createHorizontalBox();
+        excludeBox.add(Box.createHorizontalStrut(5));
+        excludeBox.add(excludeLabel);
+        excludeBox.add(Box.createHorizontalStrut(5));
+        excludeBox.add(excludeTF);
+        outerBox.add(excludeBox);
+        final Box gitignoreBox = Box.createHorizontalBox();
+        gitignoreBox.add(Box.createHorizontalStrut(5));
+        gitignoreBox.add(gitignoreCheckBox);
+        gitignoreBox.add(Box.createHorizontalGlue());
+        outerBox.add(gitignoreBox);
         outerBox.add(Box.createVerticalStrut(20));
         final Box entryBox = Box.createHorizontalBox();
         entryBox.add(Box.createHorizontalStrut(5));
@@ -139,7 +225,52 @@ class ModifiedFileSearch implements ActionListener {
         outerBox.add(entryBox);
         outerBox.add(Box.createVerticalStrut(5));
         outerBox.add(modifiedPanel);
-        outerBox.add(Box.createVerticalStrut(25));
+        final Box modifiedOnlyBox = Box.createHorizontalBox();
+        modifiedOnlyBox.add(Box.createHorizontalStrut(5));
+        modifiedOnlyBox.add(modifiedOnlyCheckBox);
+        modifiedOnlyBox.add(Box.createHorizontalGlue());
+        outerBox.add(modifiedOnlyBox);
+        final Box newestBox = Box.createHorizontalBox();
+        newestBox.add(Box.createHorizontalStrut(5));
+        newestBox.add(newestCheckBox);
+        newestBox.add(Box.createHorizontalStrut(5));
+        newestBox.add(newestSpinner);
+        newestBox.add(Box.createHorizontalStrut(5));
+        newestBox.add(new JLabel("files"));
+        newestBox.add(Box.createHorizontalGlue());
+        outerBox.add(newestBox);
+        final Box rollupBox = Box.createHorizontalBox();
+        rollupBox.add(Box.createHorizontalStrut(5));
+        rollupBox.add(rollupCheckBox);
+        rollupBox.add(Box.createHorizontalGlue());
+        outerBox.add(rollupBox);
+        outerBox.add(Box.createVerticalStrut(5));
+        final Box indexBox = Box.createHorizontalBox();
+        indexBox.add(Box.createHorizontalStrut(5));
+        indexBox.add(indexCheckBox);
+        indexBox.add(Box.createHorizontalGlue());
+        outerBox.add(indexBox);
+        final Box remoteBox = Box.createHorizontalBox();
+        remoteBox.add(Box.createHorizontalStrut(5));
+        remoteBox.add(remoteCheckBox);
+        remoteBox.add(Box.createHorizontalGlue());
+        outerBox.add(remoteBox);
+        final Box hashBox = Box.createHorizontalBox();
+        hashBox.add(Box.createHorizontalStrut(5));
+        hashBox.add(hashCheckBox);
+        hashBox.add(Box.createHorizontalGlue());
+        outerBox.add(hashBox);
+        final Box archiveBox = Box.createHorizontalBox();
+        archiveBox.add(Box.createHorizontalStrut(5));
+        archiveBox.add(archiveCheckBox);
+        archiveBox.add(Box.createHorizontalGlue());
+        outerBox.add(archiveBox);
+        final Box watchBox = Box.createHorizontalBox();
+        watchBox.add(Box.createHorizontalStrut(5));
+        watchBox.add(watchCheckBox);
+        watchBox.add(Box.createHorizontalGlue());
+        outerBox.add(watchBox);
+        outerBox.add(Box.createVerticalStrut(20));
         final Box buttonBox = Box.createHorizontalBox();
         buttonBox.add(Box.createHorizontalGlue());
         buttonBox.add(modifiedButton);
@@ -149,6 +280,7 @@ class ModifiedFileSearch implements ActionListener {
         panel.add(outerBox);
 
         searchStatusLayerUI = new DisplayStringLayerUI(searchStatusQueue);
+        searchStatusLayerUI.setMetrics(searchEngine.getMetrics());
         footerPanel = new JPanel();
         final JButton pauseButton = new JButton(ButtonState.Pause.toString());
                      
@@ -180,18 +312,8 @@ class ModifiedFileSearch implements ActionListener {
             @Override
             public void actionPerformed(ActionEvent e) {
                 // cancel the current search and return GUI to original state.
-                isWalking = false;
-                fileWalkTaskFuture.cancel(true);
-                translateTaskFuture.cancel(true);
-                fileInfoQueue.clear();
-                searchStatusQueue.clear();
-                infoQueue.clear();
-                
-                searchStatusLayerUI.stop();
-                infoLayerUI.stop();                
-                footerPanel.setVisible(false);
-                modifiedButton.setEnabled(true);
-                fileChooserButton.setEnabled(true);
+                search.cancel();
+                resetDisplay();
                 pauseButton.setText(ButtonState.Pause.toString());
             }
         });
@@ -214,18 +336,43 @@ class ModifiedFileSearch implements ActionListener {
         fpsSlider.setMinorTickSpacing(0);
         fpsSlider.setPaintLabels(true);
 
+        // Scroll shows one result per frame, Batch up to a fixed number and
+        // Catch up skips to the newest results.
+        final JComboBox<String> drainModeBox = new JComboBox<String>(
+                new String[]{"Scroll", "Batch", "Catch up"});
+        drainModeBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                int index = drainModeBox.getSelectedIndex();
+                searchStatusLayerUI.setDrainMode(
+                        DisplayStringLayerUI.DrainMode.values()[index]);
+            }
+        });
+
         JPanel sliderPanel = new JPanel();
         sliderPanel.add(new JLabel("Adjust Display Speed:"));
         sliderPanel.add(fpsSlider);
+        sliderPanel.add(drainModeBox);
         sliderPanel.setBorder(BorderFactory.createEtchedBorder());
         footerPanel.add(sliderPanel);
         footerPanel.add(Box.createRigidArea(new Dimension(40, 0)));
         footerPanel.add(pauseButton);
         footerPanel.add(Box.createHorizontalStrut(5));
         footerPanel.add(resetButton);
+        footerPanel.add(Box.createHorizontalStrut(10));
+        statsLabel = new JLabel();
+        statsLabel.setToolTipText("Entries walked per second, results waiting to be "
+                + "translated and displayed, and 99th percentile latencies");
+        footerPanel.add(statsLabel);
         footerPanel.setVisible(false);
+        statsTimer = new Timer(STATS_INTERVAL_MS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                updateStats();
+            }
+        });
 
-        JTextPane editorPane = new JTextPane();
+        editorPane = new JTextPane();
         editorPane.setEditable(false);
         java.net.URL helpURL = ModifiedFileSearch.class.getResource(
                 "Modified File Search.htm");
@@ -239,8 +386,10 @@ class ModifiedFileSearch implements ActionListener {
             System.err.println("Couldn't find file: ModifiedFilesFinder.html");
         }
 
-        JScrollPane editorScrollPane =
-                new JScrollPane(new JLayer(editorPane, infoLayerUI));
+        newestArea = new JTextArea();
+        newestArea.setEditable(false);
+        editorLayer = new JLayer<JComponent>(editorPane, infoLayerUI);
+        JScrollPane editorScrollPane = new JScrollPane(editorLayer);
         editorScrollPane.setVerticalScrollBarPolicy(
                 JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
         editorScrollPane.setHorizontalScrollBarPolicy(
@@ -253,7 +402,10 @@ class ModifiedFileSearch implements ActionListener {
 
         JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT,
                 editorScrollPane, new JLayer(panel, searchStatusLayerUI));
-        frame.getContentPane().add(splitPane, BorderLayout.CENTER);
+        JSplitPane resultsSplitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+                splitPane, createResultsPanel());
+        resultsSplitPane.setResizeWeight(0.6);
+        frame.getContentPane().add(resultsSplitPane, BorderLayout.CENTER);
         frame.getContentPane().add(footerPanel, BorderLayout.SOUTH);
 
         frame.pack();
@@ -278,12 +430,71 @@ class ModifiedFileSearch implements ActionListener {
                     "Please enter a file type to search.", "Input Required",
                     JOptionPane.INFORMATION_MESSAGE);
             return;
+        } else if (dirEntryLayerUI.isEntryPending()) {
+            // The directory is checked off the event dispatch thread.
+            JOptionPane.showMessageDialog(fileTypeTF,
+                    "The directory is still being checked, please try again.",
+                    "Checking Directory", JOptionPane.INFORMATION_MESSAGE);
+            return;
         } else if ( !dirEntryLayerUI.isEntryValid() ) {
             JOptionPane.showMessageDialog(fileTypeTF,
                     "Please enter a valid directory to search.", "Input Required",
                     JOptionPane.INFORMATION_MESSAGE);
             return;
+        } else if (!searchEngine.canStart()) {
+            // Searches that were reset keep running until their walk
+            // notices, which may take a while on a slow file system.
+            JOptionPane.showMessageDialog(fileTypeTF,
+                    "The previous search is still stopping, please try again.",
+                    "Search Running", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        ContentMatcher contentMatcher = null;
+        String enteredContent = contentTF.getText();
+        if (enteredContent != null && !enteredContent.isEmpty()) {
+            if (regexCheckBox.isSelected()) {
+                try {
+                    contentMatcher = ContentMatcher.regex(enteredContent);
+                } catch (PatternSyntaxException pse) {
+                    JOptionPane.showMessageDialog(contentTF,
+                            pse.getMessage(), "Invalid Regular Expression",
+                            JOptionPane.INFORMATION_MESSAGE);
+                    return;
+                }
+            } else {
+                contentMatcher = ContentMatcher.literal(enteredContent);
+            }
+        }
+        final Path path = Paths.get(pathField.getText());
+        SubtreeExclusions exclusions = null;
+        List<String> excludePatterns = SearchCriteria.splitExclusions(excludeTF.getText());
+        if (!excludePatterns.isEmpty() || gitignoreCheckBox.isSelected()) {
+            try {
+                exclusions = new SubtreeExclusions(path, excludePatterns,
+                        gitignoreCheckBox.isSelected());
+            } catch (IllegalArgumentException iae) {
+                JOptionPane.showMessageDialog(excludeTF,
+                        iae.getMessage(), "Invalid Pattern",
+                        JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+        }
+        ResultExporter exporter = null;
+        String enteredExport = exportTF.getText();
+        if (enteredExport != null && !enteredExport.isEmpty()) {
+            try {
+                Path exportFile = Paths.get(enteredExport);
+                exporter = ResultExporter.open(exportFile, ExportFormat.forFile(exportFile),
+                        contentMatcher != null, hashCheckBox.isSelected());
+            } catch (IllegalArgumentException | IOException e1) {
+                // Includes the InvalidPathException thrown for a malformed path.
+                JOptionPane.showMessageDialog(exportTF,
+                        e1.getMessage(), "Could Not Export",
+                        JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
         }
+        this.exporter = exporter;
 
         modifiedButton.setEnabled(false);
         fileChooserButton.setEnabled(false);
@@ -292,6 +503,10 @@ class ModifiedFileSearch implements ActionListener {
 
         searchStatusLayerUI.start();
         infoLayerUI.start();
+        lastEntriesVisited = searchEngine.getMetrics().getEntriesVisited();
+        lastStatsTime = System.nanoTime();
+        updateStats();
+        statsTimer.start();
         // show some basic information over the text area
         String dirInfo = "Directories in white have been searched.";
         String modInfo = "Files in red have been modified.";
@@ -302,51 +517,204 @@ class ModifiedFileSearch implements ActionListener {
         infoQueue.add(new DisplayStringImpl(noModInfo, Color.GREEN));
 
         // Determine the modified time to search for
+        long modifiedTimeWindow = SearchCriteria.EVER_WINDOW;
         if (everButton.isSelected()) {
-            modifiedTimeWindow = 0;
+            modifiedTimeWindow = SearchCriteria.EVER_WINDOW;
         } else if (thirtyDayButton.isSelected()) {
-            modifiedTimeWindow = (MS_IN_HOUR * 720);
+            modifiedTimeWindow = SearchCriteria.THIRTY_DAY_WINDOW;
         } else if (weekButton.isSelected()) {
-            modifiedTimeWindow = (MS_IN_HOUR * 168);
+            modifiedTimeWindow = SearchCriteria.WEEK_WINDOW;
         } else if (hourButton.isSelected()) {
-            modifiedTimeWindow = MS_IN_HOUR;
+            modifiedTimeWindow = SearchCriteria.HOUR_WINDOW;
         }
 
-        final Path path = Paths.get(pathField.getText());
-        // regexp will remove '.' and ',', returning just file types
-        String[] strsToAdd = enteredTypes.split("\\s*(,|\\s|\"|\')\\s*");
-        boolean first = true;
-        // Using the "glob" syntax defined here:
-        // http://docs.oracle.com/javase/7/docs/api/java/nio/file/FileSystem.html#getPathMatcher(java.lang.String)
-        StringBuilder pttrBuilder = new StringBuilder("glob:*.{");
-        for (String str : strsToAdd) {
-            if (!str.isEmpty()) {
-                if (str.startsWith("."))
-                    str = str.substring(1);
-                else if (str.startsWith("*."))
-                    str = str.substring(2);
-                if (!first) {
-                    pttrBuilder.append(",");
-                } else {
-                    first = false;
-                }
-                pttrBuilder.append(str);
+        // The cutoff is fixed when the search starts.
+        ModifiedTimeFilter modifiedTimeFilter = new ModifiedTimeFilter(modifiedTimeWindow,
+                System.currentTimeMillis(), modifiedOnlyCheckBox.isSelected());
+
+        final String pattern = SearchCriteria.buildGlob(enteredTypes);
+        SearchCriteria criteria = new SearchCriteria(path, FileTypeMatcher.compile(pattern),
+                modifiedTimeFilter);
+        criteria.setContentMatcher(contentMatcher);
+        criteria.setExclusions(exclusions);
+        criteria.setRollUp(rollupCheckBox.isSelected());
+        criteria.setThreadPerDirectory(remoteCheckBox.isSelected());
+        criteria.setUseIndex(indexCheckBox.isSelected());
+        criteria.setHashContent(hashCheckBox.isSelected());
+        criteria.setSearchArchives(archiveCheckBox.isSelected());
+        criteria.setWatch(watchCheckBox.isSelected());
+
+        // The newest files are listed in place of the help.
+        if (newestCheckBox.isSelected()) {
+            criteria.setNewestLimit((Integer) newestSpinner.getValue());
+            newestArea.setText("Searching...");
+            editorLayer.setView(newestArea);
+        }
+
+        // Results of this search are kept compactly, and listed by the table.
+        resultStore = new ResultStore();
+        resultTableModel.setResultStore(resultStore, modifiedTimeFilter);
+        try {
+            search = searchEngine.start(criteria, resultStore,
+                    new TranslatingListener(modifiedTimeFilter, resultStore, exporter));
+        } catch (IllegalStateException ise) {
+            resetDisplay();
+            JOptionPane.showMessageDialog(fileTypeTF,
+                    ise.getMessage(), "Could Not Search",
+                    JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+
+    /**
+     * Creates the table of results, which can be sorted by any column and
+     * filtered by file name. The table only renders the rows on screen, so
+     * it can hold every result of a search.
+     */
+    private JComponent createResultsPanel() {
+        resultTableModel = new ResultTableModel();
+        JTable resultTable = new JTable(resultTableModel);
+        resultTable.setFillsViewportHeight(true);
+        final ResultRowSorter sorter = new ResultRowSorter(resultTableModel);
+        resultTable.setRowSorter(sorter);
+
+        final JTextField filterTF = new JTextField();
+        filterTF.setToolTipText("Only show results whose name contains the text, "
+                + "ignoring case.");
+        filterTF.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                filterChanged();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                filterChanged();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                filterChanged();
+            }
+
+            private void filterChanged() {
+                sorter.setNameFilter(filterTF.getText());
+            }
+        });
+        Box filterBox = Box.createHorizontalBox();
+        filterBox.add(Box.createHorizontalStrut(5));
+        filterBox.add(new JLabel("Filter results by name:"));
+        filterBox.add(Box.createHorizontalStrut(5));
+        filterBox.add(filterTF);
+
+        JScrollPane tableScrollPane = new JScrollPane(resultTable);
+        tableScrollPane.setPreferredSize(new Dimension(400, 200));
+        JPanel resultsPanel = new JPanel(new BorderLayout());
+        resultsPanel.add(filterBox, BorderLayout.NORTH);
+        resultsPanel.add(tableScrollPane, BorderLayout.CENTER);
+        return resultsPanel;
+    }
+
+    /**
+     * Lists the newest files in place of the help. Must be invoked on the
+     * event dispatch thread.
+     *
+     * @param newest - The newest files, newest first.
+     * @param complete - Flag indicating the list is final.
+     */
+    private void showNewestFiles(List<FileInfo> newest, boolean complete) {
+        DateFormat format = new SimpleDateFormat(NEWEST_DATE_FORMAT);
+        StringBuilder builder = new StringBuilder();
+        builder.append(complete ? "The " : "So far, the ").append(newest.size())
+                .append(" most recently modified files:\n\n");
+        for (FileInfo info : newest) {
+            long modified = info.getBasicFileAttributes().lastModifiedTime().toMillis();
+            builder.append(format.format(new Date(modified))).append("  ")
+                    .append(info.getPath()).append('\n');
+        }
+        newestArea.setText(builder.toString());
+        newestArea.setCaretPosition(0);
+    }
+
+    /**
+     * Shows the rollups of a search as a tree in place of the help. Must be
+     * invoked on the event dispatch thread.
+     *
+     * @param root - Rollup of the directory searched.
+     */
+    private void showRollups(DirectoryRollups.Rollup root) {
+        JTree tree = new JTree(rollupNode(root, root.getDirectory().toString(),
+                new SimpleDateFormat(NEWEST_DATE_FORMAT)));
+        tree.setRootVisible(true);
+        editorLayer.setView(tree);
+    }
+
+    private static DefaultMutableTreeNode rollupNode(DirectoryRollups.Rollup rollup,
+            String name, DateFormat format) {
+        StringBuilder label = new StringBuilder(name).append(" - ")
+                .append(rollup.getModified()).append(" of ").append(rollup.getMatched())
+                .append(" modified, ").append(rollup.getFiles()).append(" files, ")
+                .append(rollup.getBytes() / 1024).append(" KB");
+        if (rollup.getNewestModified() != Long.MIN_VALUE) {
+            label.append(", newest ").append(format.format(new Date(rollup.getNewestModified())));
+        }
+        DefaultMutableTreeNode node = new DefaultMutableTreeNode(label.toString());
+        for (DirectoryRollups.Rollup child : rollup.getChildren()) {
+            node.add(rollupNode(child, child.getDirectory().getFileName().toString(), format));
+        }
+        return node;
+    }
+
+    /**
+     * Returns the GUI to its state before a search was started.
+     */
+    private void resetDisplay() {
+        closeExporter();
+        editorLayer.setView(editorPane);
+        resultStore = null;
+        resultTableModel.setResultStore(null, null);
+        searchStatusQueue.clear();
+        infoQueue.clear();
+
+        searchStatusLayerUI.stop();
+        infoLayerUI.stop();
+        statsTimer.stop();
+        footerPanel.setVisible(false);
+        modifiedButton.setEnabled(true);
+        fileChooserButton.setEnabled(true);
+    }
+
+    /**
+     * Closes the export of the current search, if any. An export being
+     * written by the search is closed once the batch being written is done.
+     */
+    private void closeExporter() {
+        ResultExporter current = exporter;
+        exporter = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ioe) {
+                // The export of a cancelled search is incomplete anyway.
             }
         }
-        pttrBuilder.append("}");
-        final String pattern = pttrBuilder.toString();
-
-        isWalking = true;
-        // Start 2 threads, one to execute the file walk and one to translate
-        // the output of the file walk to a format for the status components.
-        
-        TranslateFileInfoTask translateTask = new TranslateFileInfoTask();
-        translateTaskFuture =
-                Executors.newSingleThreadExecutor(translateThreadFactory).submit(translateTask);
-
-        FileWalkTask walkTask = new FileWalkTask(path, pattern);        
-        fileWalkTaskFuture =
-                Executors.newSingleThreadExecutor(fileWalkThreadFactory).submit(walkTask);
+    }
+
+    /**
+     * Shows the throughput of the walk, the depth of the queues between the
+     * stages of the search and their slowest latencies.
+     */
+    private void updateStats() {
+        SearchMetrics metrics = searchEngine.getMetrics();
+        long entries = metrics.getEntriesVisited();
+        long now = System.nanoTime();
+        long elapsedNanos = Math.max(now - lastStatsTime, 1);
+        long entriesPerSecond = (entries - lastEntriesVisited) * 1000000000L / elapsedNanos;
+        lastEntriesVisited = entries;
+        lastStatsTime = now;
+        statsLabel.setText(String.format("%,d entries/s  queue %,d  backlog %,d"
+                + "  stat p99 %,d\u00b5s  paint p99 %,d\u00b5s",
+                entriesPerSecond, metrics.getResultQueueDepth(), metrics.getDisplayBacklog(),
+                metrics.getStatLatency99thMicros(), metrics.getPaint99thMicros()));
     }
 
     private enum ButtonState {
@@ -354,20 +722,37 @@ class ModifiedFileSearch implements ActionListener {
     }
 
     private static final String SEARCH_COMMAND = "StartModifiedSearch";
-    private static final long MS_IN_HOUR = 3600000;
-    private boolean isWalking = false;
+    private static final String PARALLELISM_PROPERTY = "modifiedfilesearch.parallelism";
+    private static final int WALK_PARALLELISM = Integer.getInteger(PARALLELISM_PROPERTY,
+            Runtime.getRuntime().availableProcessors());
+    private static final int MAX_CONCURRENT_SEARCHES = 2;
+    private static final int STATS_INTERVAL_MS = 1000;
+    private static final int DEFAULT_NEWEST_LIMIT = 20;
+    private static final int MAX_NEWEST_LIMIT = 100000;
+    private static final String NEWEST_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
     private DisplayStringLayerUI searchStatusLayerUI;
     private DisplayStringLayerUI infoLayerUI;
     private DirectoryEntryLayerUI dirEntryLayerUI;
-    private Future fileWalkTaskFuture;
-    private Future translateTaskFuture;
-    private long modifiedTimeWindow;
+    private final SearchEngine searchEngine;
+    private SearchEngine.Search search;
+    private volatile ResultStore resultStore;
+    private volatile ResultExporter exporter;
     private final Queue<DisplayString> infoQueue;
     private final Queue<DisplayString> searchStatusQueue;
-    private final Queue<FileInfo> fileInfoQueue;
-    private final ThreadFactory fileWalkThreadFactory;
-    private final ThreadFactory translateThreadFactory;
     private JButton fileChooserButton;
+    private JCheckBox indexCheckBox;
+    private JCheckBox remoteCheckBox;
+    private JCheckBox hashCheckBox;
+    private JCheckBox archiveCheckBox;
+    private JCheckBox watchCheckBox;
+    private JCheckBox modifiedOnlyCheckBox;
+    private JCheckBox newestCheckBox;
+    private JSpinner newestSpinner;
+    private JCheckBox rollupCheckBox;
+    private JTextPane editorPane;
+    private JTextArea newestArea;
+    private JLayer<JComponent> editorLayer;
+    private ResultTableModel resultTableModel;
     private JButton modifiedButton;
     private JPanel footerPanel;
     private JRadioButton everButton;
@@ -375,7 +760,16 @@ class ModifiedFileSearch implements ActionListener {
     private JRadioButton weekButton;
     private JRadioButton hourButton;
     private JSlider fpsSlider;
+    private JLabel statsLabel;
+    private Timer statsTimer;
+    private long lastEntriesVisited;
+    private long lastStatsTime;
     private JTextField fileTypeTF;
+    private JTextField contentTF;
+    private JTextField exportTF;
+    private JTextField excludeTF;
+    private JCheckBox gitignoreCheckBox;
+    private JCheckBox regexCheckBox;
     private JTextField pathField;
 
     public static void main(String[] args) {
@@ -390,85 +784,159 @@ class ModifiedFileSearch implements ActionListener {
     }
 
     /**
-     * This task will translate the FileInfo objects provided by the
-     * SpecifiedFileVisitor to DisplayStrings that can be rendered by the
-     * DisplayStringLayerUI.
+     * Translates the FileInfo delivered by a search to DisplayStrings that
+     * can be rendered by the DisplayStringLayerUI, see FileInfoTranslator.
      */
-    private class TranslateFileInfoTask implements Callable {
+    private class TranslatingListener implements SearchEngine.SearchListener {
+
+        /**
+         * @param modifiedTimeFilter - Filter of the search, which decides the
+         * color of each file.
+         * @param store - ResultStore of the search, listed by the table.
+         * @param exporter - ResultExporter the results are also written to,
+         * or null.
+         */
+        private TranslatingListener(ModifiedTimeFilter modifiedTimeFilter,
+                ResultStore store, ResultExporter exporter) {
+            this.modifiedTimeFilter = modifiedTimeFilter;
+            this.store = store;
+            this.exporter = exporter;
+            this.translator = new FileInfoTranslator(searchStatusQueue, infoQueue,
+                    modifiedTimeFilter);
+        }
 
         @Override
-        public Object call() {
-
-            while (isWalking || fileInfoQueue.size() > 0) {
-                FileInfo info = fileInfoQueue.poll();
-                if (info != null) {
-                    String str = info.getPath().toString();
-                    Color color;
-                    if (info.getBasicFileAttributes() != null) {
-                        if (info.getBasicFileAttributes().isDirectory()) {
-                            color = Color.WHITE;
-                        } else {
-                            // if the window is set to 0, used creation time
-                            long threshold = info.getBasicFileAttributes().creationTime().toMillis();
-                            if (modifiedTimeWindow != 0) {
-                                threshold = System.currentTimeMillis() - modifiedTimeWindow;
-                            }
-                            if (info.getBasicFileAttributes().lastModifiedTime().toMillis()
-                                    > threshold) {
-                                color = Color.RED;
-                            } else {
-                                color = Color.GREEN;
-                            }
-                        }
-                        DisplayStringImpl dsi = new DisplayStringImpl(str, color);
-                        searchStatusQueue.add(dsi);
-                    } else {
-                        str = "Could not access " + str;
-                        color = Color.ORANGE;
-                        DisplayStringImpl dsi = new DisplayStringImpl(str, color);
-                        infoQueue.add(dsi);
-                    }
-                }
+        public void resultsFound(List<FileInfo> batch, boolean more) {
+            for (FileInfo info : batch) {
+                translator.translate(info);
+            }
+            resultTableModel.resultsPublished();
+            if (exporter != null) {
+                export(batch);
             }
-            searchStatusQueue.add(new DisplayStringImpl("Finished", Color.GREEN));
-            return true;
         }
-    }
 
-    /**
-     * This task will execute the FileWalk of the path specified, visiting files
-     * matching the pattern specified.
-     */
-    private class FileWalkTask implements Callable {
+        @Override
+        public void newestFilesFound(final List<FileInfo> newest, final boolean complete) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    showNewestFiles(newest, complete);
+                }
+            });
+            // The list of the initial walk is shown as results, and
+            // exported. When watching, the lists that follow each change
+            // only replace the list in the table.
+            if (complete) {
+                showNewestResults(newest);
+                if (!newestExported) {
+                    newestExported = true;
+                    resultsFound(newest, false);
+                }
+            }
+        }
 
         /**
-         * Constructs a task to execute the "walk" of the directory specified.
-         * If the walk produces a IOException, an appropriate DisplayString will
-         * be added to the infoQueue.
-         *
-         * @param pathToWalk - Path to the directory to be walked.
-         * @param patternToMatch - Pattern to match files to while walking.
+         * Lists the newest files in the table. They are kept by the
+         * TopModifiedFiles rather than appended to the store of the search,
+         * so the table is given a store holding only the final list.
          */
-        private FileWalkTask(Path pathToWalk, String patternToMatch) {
-            this.pathToWalk = pathToWalk;
-            this.patternToMatch = patternToMatch;
+        private void showNewestResults(List<FileInfo> newest) {
+            final ResultStore newestStore = new ResultStore();
+            for (FileInfo info : newest) {
+                newestStore.append(info.getPath(), info.getBasicFileAttributes(),
+                        info.getMatchingLines(), info.getContentChange());
+            }
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    // Unless the search was reset, or another started.
+                    if (resultStore == store) {
+                        resultTableModel.setResultStore(newestStore, modifiedTimeFilter);
+                    }
+                }
+            });
         }
 
         @Override
-        public Object call() throws Exception {
+        public void directoryRollupsFound(final DirectoryRollups.Rollup root) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    showRollups(root);
+                }
+            });
+        }
+
+        /**
+         * Writes a batch to the export. If the export fails it is abandoned,
+         * but the search continues.
+         */
+        private void export(List<FileInfo> batch) {
+            try {
+                for (FileInfo info : batch) {
+                    BasicFileAttributes attrs = info.getBasicFileAttributes();
+                    exporter.export(info, attrs != null && !attrs.isDirectory()
+                            && modifiedTimeFilter.isModified(attrs));
+                }
+            } catch (IOException ioe) {
+                infoQueue.add(new DisplayStringImpl("Export failed: " + ioe.getMessage(),
+                        Color.ORANGE));
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
             try {
-                SpecifiedFileVisitor fileVisitor =
-                        new SpecifiedFileVisitor(fileInfoQueue, patternToMatch);
-                Files.walkFileTree(pathToWalk, fileVisitor);
-                isWalking = false;
+                exporter.close();
             } catch (IOException ioe) {
-                String str = ioe.getMessage();
-                DisplayString dspStr = new DisplayStringImpl(str, Color.ORANGE);
-                infoQueue.add(dspStr);
+                // Already reported, or the search is over.
+            }
+            exporter = null;
+        }
+
+        @Override
+        public void initialWalkFinished(int unwatchedDirectories) {
+            if (unwatchedDirectories > 0) {
+                infoQueue.add(new DisplayStringImpl("Could not watch "
+                        + unwatchedDirectories + " directories", Color.ORANGE));
+            }
+            searchStatusQueue.add(new DisplayStringImpl("Finished"
+                    + unmodifiedSummary() + ", watching for changes", Color.GREEN));
+        }
+
+        @Override
+        public void searchFinished(IOException failure) {
+            if (failure != null) {
+                infoQueue.add(new DisplayStringImpl(failure.getMessage(), Color.ORANGE));
+            }
+            if (exporter != null) {
+                try {
+                    exporter.close();
+                } catch (IOException ioe) {
+                    infoQueue.add(new DisplayStringImpl("Export failed: " + ioe.getMessage(),
+                            Color.ORANGE));
+                }
+                exporter = null;
+            }
+            searchStatusQueue.add(new DisplayStringImpl(
+                    "Finished" + unmodifiedSummary(), Color.GREEN));
+        }
+
+        /**
+         * Reports the unmodified files left out, if only modified files are
+         * shown.
+         */
+        private String unmodifiedSummary() {
+            if (!modifiedTimeFilter.isModifiedOnly()) {
+                return "";
             }
-            return true;
+            return ", " + modifiedTimeFilter.getUnmodifiedCount() + " unmodified files not shown";
         }
-        final private Path pathToWalk;
-        final private String patternToMatch;
+        private final ModifiedTimeFilter modifiedTimeFilter;
+        private final ResultStore store;
+        private final FileInfoTranslator translator;
+        private ResultExporter exporter;
+        private boolean newestExported;
     }
 }
@@ -0,0 +1,67 @@
+package modifiedfilesearch;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether files have been modified within the time window of a
+ * search. The cutoff is computed once, when the search starts, so files are
+ * judged consistently however long the walk takes. The filter also counts
+ * the unmodified files seen, so a search that only reports modified files
+ * can still say how many were left out.
+ * <p>
+ * This class must not depend on AWT or Swing.
+ *
+ * @since 1.7
+ */
+final class ModifiedTimeFilter {
+
+    /**
+     * @param modifiedTimeWindow - Window in milliseconds, or 0 for "ever".
+     * @param searchStarted - Time the search started in milliseconds.
+     * @param modifiedOnly - Flag to only report modified files.
+     */
+    ModifiedTimeFilter(long modifiedTimeWindow, long searchStarted, boolean modifiedOnly) {
+        this.ever = modifiedTimeWindow == SearchCriteria.EVER_WINDOW;
+        this.cutoff = searchStarted - modifiedTimeWindow;
+        this.modifiedOnly = modifiedOnly;
+    }
+
+    /**
+     * Determines whether a file has been modified. If the window is 0, a
+     * file is considered modified if it was modified after it was created.
+     *
+     * @param attrs - Attributes of the file.
+     * @return flag indicating the file has been modified.
+     */
+    boolean isModified(BasicFileAttributes attrs) {
+        long threshold = ever ? attrs.creationTime().toMillis() : cutoff;
+        return attrs.lastModifiedTime().toMillis() > threshold;
+    }
+
+    /**
+     * @return flag indicating only modified files, and files that could not
+     * be accessed, are reported.
+     */
+    boolean isModifiedOnly() {
+        return modifiedOnly;
+    }
+
+    /**
+     * Counts a file found to be unmodified.
+     */
+    void countUnmodified() {
+        unmodifiedCount.incrementAndGet();
+    }
+
+    /**
+     * @return the number of unmodified files counted.
+     */
+    long getUnmodifiedCount() {
+        return unmodifiedCount.get();
+    }
+    private final boolean ever;
+    private final long cutoff;
+    private final boolean modifiedOnly;
+    private final AtomicLong unmodifiedCount = new AtomicLong();
+}
@@ -0,0 +1,444 @@
+package modifiedfilesearch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import modifiedfilesearch.metrics.SearchMetrics;
+
+/**
+ * Walks a file tree in parallel, splitting the work per directory across a
+ * ForkJoinPool. The FileVisitor callbacks are invoked in the same manner as
+ * Files.walkFileTree (links are not followed), with the exception that
+ * callbacks for different directories may occur concurrently on different
+ * threads. The FileVisitor provided must therefore be thread safe.
+ * <p>
+ * preVisitDirectory is always invoked before the entries of a directory are
+ * visited, and postVisitDirectory is only invoked once every entry of the
+ * directory, and all of their descendants, have been visited.
+ *
+ * @since 1.7
+ */
+class ParallelFileWalker {
+
+    /**
+     * Creates a walker that will use the number of available processors as
+     * its parallelism.
+     */
+    ParallelFileWalker() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a walker with the parallelism specified.
+     *
+     * @param parallelism - Number of threads used to walk the tree.
+     */
+    ParallelFileWalker(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.pool = null;
+    }
+
+    /**
+     * Creates a walker that walks with a shared ForkJoinPool. The pool is
+     * not shut down by the walker.
+     *
+     * @param pool - ForkJoinPool that will execute every walk.
+     */
+    ParallelFileWalker(ForkJoinPool pool) {
+        this.parallelism = pool.getParallelism();
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the SnapshotIndex used by subsequent walks. Directories unchanged
+     * since they were recorded in the index are not listed again, and every
+     * directory walked completely is recorded in the index.
+     *
+     * @param snapshotIndex - SnapshotIndex for the tree being walked, or null
+     * to list every directory.
+     */
+    void setSnapshotIndex(SnapshotIndex snapshotIndex) {
+        this.snapshotIndex = snapshotIndex;
+    }
+
+    /**
+     * Sets the SearchMetrics that subsequent walks record the time taken to
+     * read the attributes of each entry to.
+     *
+     * @param metrics - SearchMetrics to record to, or null.
+     */
+    void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Walks the file tree rooted at the Path specified, invoking the
+     * FileVisitor for each file and directory found. This method blocks until
+     * the walk completes.
+     *
+     * @param start - Path to the root of the tree to be walked.
+     * @param visitor - Thread safe FileVisitor to invoke for each file.
+     * @throws IOException - If the FileVisitor throws an IOException, the
+     * walk is terminated and the first IOException thrown is rethrown here.
+     * If the calling thread is interrupted, the walk is terminated and an
+     * InterruptedIOException is thrown.
+     */
+    void walkFileTree(Path start, FileVisitor<Path> visitor) throws IOException {
+        if (pool != null) {
+            walkFileTree(pool, start, visitor);
+            return;
+        }
+        ForkJoinPool walkPool = new ForkJoinPool(parallelism);
+        try {
+            walkFileTree(walkPool, start, visitor);
+        } finally {
+            walkPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Walks the file tree rooted at the Path specified using the
+     * ForkJoinPool provided. This method blocks until the walk completes.
+     *
+     * @param pool - ForkJoinPool that will execute the walk.
+     * @param start - Path to the root of the tree to be walked.
+     * @param visitor - Thread safe FileVisitor to invoke for each file.
+     * @throws IOException - If the FileVisitor throws an IOException, the
+     * walk is terminated and the first IOException thrown is rethrown here.
+     * If the calling thread is interrupted, the walk is terminated and an
+     * InterruptedIOException is thrown.
+     */
+    void walkFileTree(ForkJoinPool pool, Path start, FileVisitor<Path> visitor)
+            throws IOException {
+        WalkState state = new WalkState(visitor, snapshotIndex, metrics);
+        ForkJoinTask<Void> walk = pool.submit(new EntryTask(state, start, null));
+        try {
+            walk.get();
+        } catch (InterruptedException ie) {
+            state.terminated = true;
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Walk of " + start + " was interrupted");
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+        if (state.failure.get() != null) {
+            throw state.failure.get();
+        }
+    }
+
+    /**
+     * State shared by every task of a single walk.
+     */
+    private static class WalkState {
+
+        private WalkState(FileVisitor<Path> visitor, SnapshotIndex index,
+                SearchMetrics metrics) {
+            this.visitor = visitor;
+            this.index = index;
+            this.metrics = metrics;
+        }
+
+        /**
+         * Records the first IOException thrown by the FileVisitor, which
+         * terminates the walk.
+         */
+        private void fail(IOException ioe) {
+            failure.compareAndSet(null, ioe);
+            terminated = true;
+        }
+        private final FileVisitor<Path> visitor;
+        private final SnapshotIndex index;
+        private final SearchMetrics metrics;
+        private final AtomicReference<IOException> failure =
+                new AtomicReference<IOException>();
+        private volatile boolean terminated;
+    }
+
+    /**
+     * Visits a single entry of the tree. If the entry is a directory, its
+     * entries are visited by forked subtasks before postVisitDirectory is
+     * invoked.
+     */
+    private static class EntryTask extends RecursiveAction {
+
+        /**
+         * @param state - State of the walk this task belongs to.
+         * @param entry - Path to the entry to be visited.
+         * @param attrs - Attributes of the entry, or null if they have not
+         * yet been read.
+         */
+        private EntryTask(WalkState state, Path entry, BasicFileAttributes attrs) {
+            this.state = state;
+            this.entry = entry;
+            this.attrs = attrs;
+        }
+
+        @Override
+        protected void compute() {
+            if (state.terminated) {
+                return;
+            }
+            FileVisitor<Path> visitor = state.visitor;
+            try {
+                BasicFileAttributes entryAttrs = attrs;
+                if (entryAttrs == null) {
+                    try {
+                        entryAttrs = readAttributes(entry);
+                    } catch (IOException ioe) {
+                        handle(visitor.visitFileFailed(entry, ioe));
+                        return;
+                    }
+                }
+                if (!entryAttrs.isDirectory()) {
+                    handle(visitor.visitFile(entry, entryAttrs));
+                    return;
+                }
+                walkDirectory(visitor, entryAttrs);
+            } catch (IOException ioe) {
+                state.fail(ioe);
+            }
+        }
+
+        /**
+         * Visits the directory this task represents. Files are visited on this
+         * thread, subdirectories are forked so they may be stolen by idle
+         * workers. If the directory is unchanged since it was recorded in the
+         * SnapshotIndex, its recorded entries are visited instead of listing
+         * it again.
+         */
+        private void walkDirectory(FileVisitor<Path> visitor, BasicFileAttributes dirAttrs)
+                throws IOException {
+            SnapshotIndex index = state.index;
+            if (index != null) {
+                SnapshotIndex.DirectorySnapshot snapshot = index.lookup(entry, dirAttrs);
+                Path[] children = snapshot == null ? null : resolveSnapshot(snapshot);
+                if (children != null) {
+                    walkSnapshot(visitor, dirAttrs, snapshot, children);
+                    return;
+                }
+            }
+
+            DirectoryStream<Path> stream;
+            try {
+                stream = Files.newDirectoryStream(entry);
+            } catch (IOException ioe) {
+                // Same as Files.walkFileTree, a directory that cannot be
+                // opened is reported as a failed file.
+                handle(visitor.visitFileFailed(entry, ioe));
+                return;
+            }
+
+            List<EntryTask> subTasks = new ArrayList<EntryTask>();
+            List<String> names = null;
+            List<BasicFileAttributes> entryAttrs = null;
+            if (index != null) {
+                names = new ArrayList<String>();
+                entryAttrs = new ArrayList<BasicFileAttributes>();
+            }
+            boolean complete = false;
+            IOException iterationException = null;
+            try {
+                FileVisitResult result = visitor.preVisitDirectory(entry, dirAttrs);
+                if (result != FileVisitResult.CONTINUE) {
+                    handle(result);
+                    return;
+                }
+                try {
+                    complete = true;
+                    for (Path child : stream) {
+                        if (state.terminated) {
+                            return;
+                        }
+                        BasicFileAttributes childAttrs;
+                        try {
+                            childAttrs = readAttributes(child);
+                        } catch (IOException ioe) {
+                            complete = false;
+                            result = visitor.visitFileFailed(child, ioe);
+                            if (result == FileVisitResult.CONTINUE) {
+                                continue;
+                            }
+                            handle(result);
+                            break;
+                        }
+                        if (names != null) {
+                            names.add(child.getFileName().toString());
+                            entryAttrs.add(childAttrs);
+                        }
+                        result = visitChild(visitor, child, childAttrs, subTasks);
+                        if (result != FileVisitResult.CONTINUE) {
+                            complete = false;
+                            handle(result);
+                            break;
+                        }
+                    }
+                } catch (DirectoryIteratorException die) {
+                    complete = false;
+                    iterationException = die.getCause();
+                }
+            } finally {
+                try {
+                    stream.close();
+                } finally {
+                    // Subtasks still visit entries of this directory, so
+                    // they are joined even if the stream fails to close.
+                    for (EntryTask subTask : subTasks) {
+                        subTask.join();
+                    }
+                }
+            }
+            if (!state.terminated) {
+                handle(visitor.postVisitDirectory(entry, iterationException));
+                if (complete && index != null) {
+                    index.record(entry, new SnapshotIndex.DirectorySnapshot(
+                            dirAttrs, names, entryAttrs));
+                }
+            }
+        }
+
+        /**
+         * Resolves the names recorded for an unchanged directory. A name
+         * decoded lossily, because it could not be represented in the
+         * encoding of the platform, cannot be resolved again.
+         *
+         * @return the Paths of the entries, or null if the directory must be
+         * listed instead.
+         */
+        private Path[] resolveSnapshot(SnapshotIndex.DirectorySnapshot snapshot) {
+            Path[] children = new Path[snapshot.getEntryCount()];
+            try {
+                for (int i = 0; i < children.length; i++) {
+                    children[i] = entry.resolve(snapshot.getName(i));
+                }
+            } catch (InvalidPathException ipe) {
+                return null;
+            }
+            return children;
+        }
+
+        /**
+         * Visits the entries recorded for an unchanged directory. The
+         * attributes recorded for files are reused, but subdirectories are
+         * read again since changes within them do not affect this directory.
+         */
+        private void walkSnapshot(FileVisitor<Path> visitor, BasicFileAttributes dirAttrs,
+                SnapshotIndex.DirectorySnapshot snapshot, Path[] children) throws IOException {
+            FileVisitResult result = visitor.preVisitDirectory(entry, dirAttrs);
+            if (result != FileVisitResult.CONTINUE) {
+                handle(result);
+                return;
+            }
+            List<EntryTask> subTasks = new ArrayList<EntryTask>();
+            try {
+                for (int i = 0; i < snapshot.getEntryCount(); i++) {
+                    if (state.terminated) {
+                        return;
+                    }
+                    Path child = children[i];
+                    BasicFileAttributes childAttrs = snapshot.getAttributes(i);
+                    if (snapshot.isDirectory(i)) {
+                        try {
+                            childAttrs = readAttributes(child);
+                        } catch (IOException ioe) {
+                            result = visitor.visitFileFailed(child, ioe);
+                            if (result == FileVisitResult.CONTINUE) {
+                                continue;
+                            }
+                            handle(result);
+                            break;
+                        }
+                    }
+                    result = visitChild(visitor, child, childAttrs, subTasks);
+                    if (result != FileVisitResult.CONTINUE) {
+                        handle(result);
+                        break;
+                    }
+                }
+            } finally {
+                for (EntryTask subTask : subTasks) {
+                    subTask.join();
+                }
+            }
+            if (!state.terminated) {
+                handle(visitor.postVisitDirectory(entry, null));
+                state.index.record(entry, snapshot);
+            }
+        }
+
+        /**
+         * Forks a subtask for a child directory, or visits a child file.
+         */
+        private FileVisitResult visitChild(FileVisitor<Path> visitor, Path child,
+                BasicFileAttributes childAttrs, List<EntryTask> subTasks) throws IOException {
+            if (childAttrs.isDirectory()) {
+                EntryTask subTask = new EntryTask(state, child, childAttrs);
+                subTask.fork();
+                subTasks.add(subTask);
+                return FileVisitResult.CONTINUE;
+            }
+            return visitor.visitFile(child, childAttrs);
+        }
+
+        /**
+         * Reads the attributes of an entry without following links, timing
+         * the read if the walk has SearchMetrics.
+         */
+        private BasicFileAttributes readAttributes(Path path) throws IOException {
+            SearchMetrics metrics = state.metrics;
+            if (metrics == null) {
+                return Files.readAttributes(path, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+            }
+            long start = System.nanoTime();
+            try {
+                return Files.readAttributes(path, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+            } finally {
+                metrics.statCompleted(System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * Applies a FileVisitResult other than CONTINUE to the walk. Since
+         * siblings may already be visited concurrently, SKIP_SIBLINGS only
+         * stops the directory currently being iterated.
+         */
+        private void handle(FileVisitResult result) {
+            if (result == FileVisitResult.TERMINATE) {
+                state.terminated = true;
+            }
+        }
+        private static final long serialVersionUID = 1L;
+        private final WalkState state;
+        private final Path entry;
+        private final BasicFileAttributes attrs;
+    }
+    private final int parallelism;
+    private final ForkJoinPool pool;
+    private SnapshotIndex snapshotIndex;
+    private SearchMetrics metrics;
+}
@@ -0,0 +1,411 @@
+package modifiedfilesearch;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+
+/**
+ * A RowSorter for a ResultTableModel that sorts by a single column and
+ * filters by file name. TableRowSorter fetches, and boxes, a cell value for
+ * every comparison, which takes seconds for millions of rows. This sorter
+ * instead takes one key per row from the store, as a long or a String, and
+ * sorts an array of row indices by them. Rows with equal keys keep the order
+ * of the model.
+ * <p>
+ * Rows appended to the model while sorted or filtered are sorted on their
+ * own and merged into the view, rather than sorting every row again. Every
+ * method must be invoked on the event dispatch thread.
+ *
+ * @since 1.7
+ */
+class ResultRowSorter extends RowSorter<ResultTableModel> {
+
+    /**
+     * @param model - ResultTableModel whose rows are sorted.
+     */
+    ResultRowSorter(ResultTableModel model) {
+        this.model = model;
+        this.modelRowCount = model.getRowCount();
+    }
+
+    @Override
+    public ResultTableModel getModel() {
+        return model;
+    }
+
+    /**
+     * Shows only the rows whose file name contains the text, ignoring case.
+     *
+     * @param text - Text the names must contain, or null or empty to show
+     * every row.
+     */
+    void setNameFilter(String text) {
+        String filter = text == null || text.isEmpty() ? null : text.toLowerCase(Locale.ROOT);
+        if (filter == null ? nameFilter == null : filter.equals(nameFilter)) {
+            return;
+        }
+        nameFilter = filter;
+        rebuild();
+    }
+
+    @Override
+    public void toggleSortOrder(int column) {
+        SortOrder order = SortOrder.ASCENDING;
+        if (!sortKeys.isEmpty() && sortKeys.get(0).getColumn() == column
+                && sortKeys.get(0).getSortOrder() == SortOrder.ASCENDING) {
+            order = SortOrder.DESCENDING;
+        }
+        setSortKeys(Collections.singletonList(new SortKey(column, order)));
+    }
+
+    /**
+     * Sorts by the first key given; any further keys are ignored.
+     */
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        List<SortKey> newKeys = Collections.emptyList();
+        if (keys != null && !keys.isEmpty()
+                && keys.get(0).getSortOrder() != SortOrder.UNSORTED) {
+            SortKey key = keys.get(0);
+            if (key.getColumn() < 0 || key.getColumn() >= model.getColumnCount()) {
+                throw new IllegalArgumentException("Invalid sort column " + key.getColumn());
+            }
+            newKeys = Collections.singletonList(key);
+        }
+        if (newKeys.equals(sortKeys)) {
+            return;
+        }
+        sortKeys = newKeys;
+        fireSortOrderChanged();
+        rebuild();
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        if (viewToModel == null) {
+            if (index < 0 || index >= modelRowCount) {
+                throw new IndexOutOfBoundsException("Invalid index " + index);
+            }
+            return index;
+        }
+        return viewToModel[index];
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        if (index < 0 || index >= modelRowCount) {
+            throw new IndexOutOfBoundsException("Invalid index " + index);
+        } else if (viewToModel == null) {
+            return index;
+        }
+        if (modelToView == null) {
+            modelToView = new int[modelRowCount];
+            Arrays.fill(modelToView, -1);
+            for (int i = 0; i < viewToModel.length; i++) {
+                modelToView[viewToModel[i]] = i;
+            }
+        }
+        return modelToView[index];
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return viewToModel == null ? modelRowCount : viewToModel.length;
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return modelRowCount;
+    }
+
+    @Override
+    public void modelStructureChanged() {
+        sortKeys = Collections.emptyList();
+        rebuild();
+    }
+
+    @Override
+    public void allRowsChanged() {
+        rebuild();
+    }
+
+    /**
+     * Merges the rows inserted into the view. The model only ever appends
+     * rows.
+     */
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        int previousCount = modelRowCount;
+        modelRowCount = model.getRowCount();
+        if (viewToModel == null) {
+            return;
+        }
+        if (firstRow != previousCount) {
+            rebuild();
+            return;
+        }
+        loadKeys(firstRow, modelRowCount);
+        int[] added = new int[modelRowCount - firstRow];
+        int addedCount = 0;
+        for (int row = firstRow; row < modelRowCount; row++) {
+            if (include(row)) {
+                added[addedCount++] = row;
+            }
+        }
+        int[] previous = viewToModel;
+        if (addedCount > 0) {
+            sort(added, addedCount);
+            viewToModel = merge(previous, added, addedCount);
+        }
+        modelToView = null;
+        fireRowSorterChanged(previous);
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        rebuild();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        rebuild();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        rebuild();
+    }
+
+    /**
+     * Filters and sorts every row again.
+     */
+    private void rebuild() {
+        int[] previous = viewToModel;
+        modelRowCount = model.getRowCount();
+        modelToView = null;
+        longKeys = null;
+        stringKeys = null;
+        descending = !sortKeys.isEmpty()
+                && sortKeys.get(0).getSortOrder() == SortOrder.DESCENDING;
+        if (sortKeys.isEmpty() && nameFilter == null) {
+            viewToModel = null;
+        } else {
+            loadKeys(0, modelRowCount);
+            int[] rows = new int[modelRowCount];
+            int count = 0;
+            for (int row = 0; row < modelRowCount; row++) {
+                if (include(row)) {
+                    rows[count++] = row;
+                }
+            }
+            sort(rows, count);
+            viewToModel = count == rows.length ? rows : Arrays.copyOf(rows, count);
+        }
+        fireRowSorterChanged(previous);
+    }
+
+    private boolean include(int row) {
+        return nameFilter == null
+                || model.getName(row).toLowerCase(Locale.ROOT).contains(nameFilter);
+    }
+
+    /**
+     * Takes the sort key of the rows from start to end from the model,
+     * growing the arrays of keys as required. Strings are folded to lower
+     * case once here, rather than on every comparison, and their prefix is
+     * kept alongside them.
+     */
+    private void loadKeys(int start, int end) {
+        if (sortKeys.isEmpty()) {
+            return;
+        }
+        int column = sortKeys.get(0).getColumn();
+        boolean numeric = column == ResultTableModel.SIZE_COLUMN
+                || column == ResultTableModel.MODIFIED_COLUMN;
+        if (longKeys == null || longKeys.length < end) {
+            longKeys = Arrays.copyOf(longKeys == null ? new long[0] : longKeys,
+                    Math.max(end, end + (end >> 1)));
+        }
+        if (!numeric && (stringKeys == null || stringKeys.length < end)) {
+            stringKeys = Arrays.copyOf(stringKeys == null ? new String[0] : stringKeys,
+                    Math.max(end, end + (end >> 1)));
+        }
+        for (int row = start; row < end; row++) {
+            switch (column) {
+                case ResultTableModel.SIZE_COLUMN:
+                    longKeys[row] = model.getSize(row);
+                    break;
+                case ResultTableModel.MODIFIED_COLUMN:
+                    longKeys[row] = model.getLastModifiedMillis(row);
+                    break;
+                case ResultTableModel.NAME_COLUMN:
+                    stringKeys[row] = model.getName(row).toLowerCase(Locale.ROOT);
+                    break;
+                case ResultTableModel.DIRECTORY_COLUMN:
+                    stringKeys[row] = model.getDirectory(row).toLowerCase(Locale.ROOT);
+                    break;
+                default:
+                    stringKeys[row] = ((String) model.getValueAt(row, column))
+                            .toLowerCase(Locale.ROOT);
+            }
+            if (!numeric) {
+                longKeys[row] = prefix(stringKeys[row]);
+            }
+        }
+    }
+
+    /**
+     * Packs the first eight characters of a String into a long, a byte each.
+     * Packing stops at the first character that does not fit in a byte,
+     * which is packed as 0xFF with zeros after it, so Strings that differ
+     * within the packed characters usually differ in the long, and never in
+     * the opposite order, and most comparisons are settled without
+     * following a reference to the String. The sign bit is flipped so the
+     * packed bytes, which are unsigned, compare correctly as a signed long.
+     */
+    private static long prefix(String key) {
+        long prefix = 0;
+        boolean packing = true;
+        for (int i = 0; i < 8; i++) {
+            int c = 0;
+            if (packing && i < key.length()) {
+                c = Math.min(key.charAt(i), 0xFF);
+                packing = c < 0xFF;
+            }
+            prefix = (prefix << 8) | c;
+        }
+        return prefix ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * @return the key of a row as a long that orders ascending in the
+     * order of the view.
+     */
+    private long orderedKey(int row) {
+        if (longKeys == null) {
+            return 0;
+        }
+        return descending ? ~longKeys[row] : longKeys[row];
+    }
+
+    /**
+     * Compares two rows whose ordered keys are equal, by their Strings if
+     * the keys are prefixes, then by their order in the model.
+     */
+    private int compareTied(int row1, int row2) {
+        if (stringKeys != null) {
+            int result = stringKeys[row1].compareTo(stringKeys[row2]);
+            if (result != 0) {
+                return descending ? -result : result;
+            }
+        }
+        return Integer.compare(row1, row2);
+    }
+
+    private int compare(int row1, int row2) {
+        int result = Long.compare(orderedKey(row1), orderedKey(row2));
+        return result != 0 ? result : compareTied(row1, row2);
+    }
+
+    /**
+     * Merge sorts the first count rows of the array. The key of each row is
+     * copied into an array moved along with the rows, so the comparisons
+     * read memory in order rather than looking up the key of each row.
+     */
+    private void sort(int[] rows, int count) {
+        if (sortKeys.isEmpty()) {
+            // Already in the order of the model.
+            return;
+        }
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = orderedKey(rows[i]);
+        }
+        int[] rowBuffer = new int[count];
+        long[] keyBuffer = new long[count];
+        for (int width = 1; width < count; width <<= 1) {
+            for (int low = 0; low < count - width; low += width << 1) {
+                int mid = low + width;
+                int high = Math.min(low + (width << 1), count);
+                if (compare(keys, rows, mid - 1, mid) <= 0) {
+                    // Already in order.
+                    continue;
+                }
+                System.arraycopy(rows, low, rowBuffer, low, high - low);
+                System.arraycopy(keys, low, keyBuffer, low, high - low);
+                int i = low;
+                int j = mid;
+                for (int k = low; k < high; k++) {
+                    if (j >= high || (i < mid && compare(keyBuffer, rowBuffer, i, j) <= 0)) {
+                        keys[k] = keyBuffer[i];
+                        rows[k] = rowBuffer[i++];
+                    } else {
+                        keys[k] = keyBuffer[j];
+                        rows[k] = rowBuffer[j++];
+                    }
+                }
+            }
+        }
+    }
+
+    private int compare(long[] keys, int[] rows, int i, int j) {
+        int result = Long.compare(keys[i], keys[j]);
+        return result != 0 ? result : compareTied(rows[i], rows[j]);
+    }
+
+    /**
+     * Merges the sorted rows added into the sorted view, finding where each
+     * belongs by a binary search, as far fewer rows are added at a time than
+     * the view holds.
+     */
+    private int[] merge(int[] view, int[] added, int addedCount) {
+        int[] merged = new int[view.length + addedCount];
+        int copied = 0;
+        for (int j = 0; j < addedCount; j++) {
+            int low = copied;
+            int high = view.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compare(view[mid], added[j]) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            System.arraycopy(view, copied, merged, copied + j, low - copied);
+            merged[low + j] = added[j];
+            copied = low;
+        }
+        System.arraycopy(view, copied, merged, copied + addedCount, view.length - copied);
+        return merged;
+    }
+
+    private final ResultTableModel model;
+    private int modelRowCount;
+    private List<SortKey> sortKeys = Collections.emptyList();
+    private String nameFilter;
+    /**
+     * The model index of each row of the view, or null if the view shows
+     * every row in the order of the model.
+     */
+    private int[] viewToModel;
+    /**
+     * The inverse of viewToModel, built when first needed.
+     */
+    private int[] modelToView;
+    /**
+     * The key of each row of the model: the size or time, or the prefix of
+     * the String.
+     */
+    private long[] longKeys;
+    private String[] stringKeys;
+    private boolean descending;
+}
@@ -0,0 +1,212 @@
+package modifiedfilesearch;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import modifiedfilesearch.data.ContentChange;
+import modifiedfilesearch.data.ResultStore;
+
+/**
+ * A TableModel over the results held by a ResultStore. No row is copied out
+ * of the store: a cell is read from the store when the table renders it, so
+ * only the rows on screen cost anything beyond the store itself, however
+ * many results there are.
+ * <p>
+ * The threads of a search append to the store and then invoke
+ * resultsPublished. Publications are coalesced: at most one update is
+ * waiting on the event dispatch thread at a time, and the model applies at
+ * most one update per FRAME_MS, inserting every row appended since the last
+ * as a single event. Every other method must be invoked on the event
+ * dispatch thread.
+ *
+ * @since 1.7
+ */
+class ResultTableModel extends AbstractTableModel {
+
+    ResultTableModel() {
+        frameTimer = new Timer(FRAME_MS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                applyUpdate();
+            }
+        });
+        frameTimer.setRepeats(false);
+    }
+
+    /**
+     * Shows the results of a new search, removing every row.
+     *
+     * @param store - ResultStore the search appends to, or null for none.
+     * @param filter - Filter of the search, which decides the status of
+     * each file.
+     */
+    void setResultStore(ResultStore store, ModifiedTimeFilter filter) {
+        this.store = store;
+        this.filter = filter;
+        rowCount = 0;
+        fireTableDataChanged();
+        resultsPublished();
+    }
+
+    /**
+     * Notes that results have been appended to the store. May be invoked by
+     * any thread.
+     */
+    void resultsPublished() {
+        if (updateScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(applyUpdateTask);
+        }
+    }
+
+    /**
+     * Inserts the rows appended since the last update, unless an update was
+     * applied within the last frame, in which case the update is deferred
+     * until the frame ends.
+     */
+    private void applyUpdate() {
+        long now = System.nanoTime();
+        long sinceLast = TimeUnit.NANOSECONDS.toMillis(now - lastUpdate);
+        if (sinceLast < FRAME_MS) {
+            frameTimer.setInitialDelay((int) (FRAME_MS - sinceLast));
+            frameTimer.restart();
+            return;
+        }
+        // Cleared before the size is read, so an append made meanwhile
+        // schedules another update.
+        updateScheduled.set(false);
+        lastUpdate = now;
+        int size = store == null ? 0 : store.size();
+        if (size > rowCount) {
+            int first = rowCount;
+            rowCount = size;
+            fireTableRowsInserted(first, size - 1);
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        switch (column) {
+            case SIZE_COLUMN:
+                return Long.class;
+            case MODIFIED_COLUMN:
+                return Date.class;
+            default:
+                return String.class;
+        }
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (column) {
+            case NAME_COLUMN:
+                return store.getName(row);
+            case DIRECTORY_COLUMN:
+                return getDirectory(row);
+            case SIZE_COLUMN:
+                return store.isDenied(row) ? null : store.getSize(row);
+            case MODIFIED_COLUMN:
+                return store.isDenied(row) ? null : new Date(store.getLastModifiedMillis(row));
+            case STATUS_COLUMN:
+                return getStatus(row);
+            default:
+                ContentChange change = store.getContentChange(row);
+                return change == null ? "" : change.getLabel();
+        }
+    }
+
+    /**
+     * @param row - Index of the row, which is also the index of the result.
+     * @return the file name of the result, without creating its Path.
+     */
+    String getName(int row) {
+        return store.getName(row);
+    }
+
+    /**
+     * @param row - Index of the row.
+     * @return the last modified time of the result in milliseconds, or
+     * Long.MIN_VALUE if it could not be accessed.
+     */
+    long getLastModifiedMillis(int row) {
+        return store.isDenied(row) ? Long.MIN_VALUE : store.getLastModifiedMillis(row);
+    }
+
+    /**
+     * @param row - Index of the row.
+     * @return the size of the result, or -1 if it could not be accessed.
+     */
+    long getSize(int row) {
+        return store.isDenied(row) ? -1 : store.getSize(row);
+    }
+
+    /**
+     * @param row - Index of the row.
+     * @return the directory of the result, or an empty String for a root.
+     */
+    String getDirectory(int row) {
+        int directoryId = store.getDirectoryId(row);
+        if (directoryId < 0) {
+            return "";
+        }
+        Path directory = store.getDirectoryTable().getPath(directoryId);
+        return directory.toString();
+    }
+
+    private String getStatus(int row) {
+        if (store.isDenied(row)) {
+            return "inaccessible";
+        } else if (store.isDirectory(row)) {
+            return "directory";
+        }
+        return filter.isModified(store.get(row).getBasicFileAttributes())
+                ? "modified" : "unmodified";
+    }
+
+    static final int NAME_COLUMN = 0;
+    static final int DIRECTORY_COLUMN = 1;
+    static final int SIZE_COLUMN = 2;
+    static final int MODIFIED_COLUMN = 3;
+    static final int STATUS_COLUMN = 4;
+    static final int CONTENT_COLUMN = 5;
+    private static final String[] COLUMN_NAMES = {
+        "Name", "Directory", "Size", "Modified", "Status", "Content"};
+    private static final long serialVersionUID = 1L;
+    /**
+     * The shortest interval between updates, one frame at 60 frames per
+     * second.
+     */
+    private static final int FRAME_MS = 16;
+    private final Timer frameTimer;
+    private final AtomicBoolean updateScheduled = new AtomicBoolean();
+    private final Runnable applyUpdateTask = new Runnable() {
+        @Override
+        public void run() {
+            applyUpdate();
+        }
+    };
+    private ResultStore store;
+    private ModifiedTimeFilter filter;
+    private int rowCount;
+    private long lastUpdate = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(FRAME_MS);
+}
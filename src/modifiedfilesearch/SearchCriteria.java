@@ -0,0 +1,223 @@
+package modifiedfilesearch;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The criteria of a search, given to SearchEngine.start, along with utility
+ * methods shared by the graphical and headless searches for turning user
+ * entered search parameters into the values used by the file walk. This
+ * class must not depend on AWT or Swing.
+ * <p>
+ * The matcher, filter and exclusions of the criteria keep the state of a
+ * single walk, so an instance is used for a single search.
+ *
+ * @since 1.7
+ */
+final class SearchCriteria {
+
+    /**
+     * Creates the criteria of a search reporting every file of the given
+     * types, without searching their content.
+     *
+     * @param root - Directory to be searched.
+     * @param fileTypeMatcher - Matcher for the files to be searched.
+     * @param modifiedTimeFilter - Filter deciding which files are modified.
+     */
+    SearchCriteria(Path root, FileTypeMatcher fileTypeMatcher,
+            ModifiedTimeFilter modifiedTimeFilter) {
+        this.root = root;
+        this.fileTypeMatcher = fileTypeMatcher;
+        this.modifiedTimeFilter = modifiedTimeFilter;
+    }
+
+    Path getRoot() {
+        return root;
+    }
+
+    FileTypeMatcher getFileTypeMatcher() {
+        return fileTypeMatcher;
+    }
+
+    ModifiedTimeFilter getModifiedTimeFilter() {
+        return modifiedTimeFilter;
+    }
+
+    ContentMatcher getContentMatcher() {
+        return contentMatcher;
+    }
+
+    /**
+     * @param contentMatcher - Matcher the content of modified files must
+     * match to be reported, or null to report files without searching them.
+     */
+    void setContentMatcher(ContentMatcher contentMatcher) {
+        this.contentMatcher = contentMatcher;
+    }
+
+    SubtreeExclusions getExclusions() {
+        return exclusions;
+    }
+
+    /**
+     * @param exclusions - SubtreeExclusions of the walk, or null to walk
+     * every entry.
+     */
+    void setExclusions(SubtreeExclusions exclusions) {
+        this.exclusions = exclusions;
+    }
+
+    int getNewestLimit() {
+        return newestLimit;
+    }
+
+    /**
+     * @param newestLimit - Number of newest files kept, which are then
+     * delivered by newestFilesFound rather than resultsFound, or 0 to
+     * deliver every result.
+     */
+    void setNewestLimit(int newestLimit) {
+        this.newestLimit = newestLimit;
+    }
+
+    boolean isRollUp() {
+        return rollUp;
+    }
+
+    /**
+     * @param rollUp - Flag to total the files of each directory, which are
+     * delivered by directoryRollupsFound.
+     */
+    void setRollUp(boolean rollUp) {
+        this.rollUp = rollUp;
+    }
+
+    boolean isThreadPerDirectory() {
+        return threadPerDirectory;
+    }
+
+    /**
+     * @param threadPerDirectory - Flag to walk with a task per directory, for
+     * file systems with high latency, rather than with the ForkJoinPool.
+     */
+    void setThreadPerDirectory(boolean threadPerDirectory) {
+        this.threadPerDirectory = threadPerDirectory;
+    }
+
+    boolean isUseIndex() {
+        return useIndex;
+    }
+
+    /**
+     * @param useIndex - Flag to walk using a SnapshotIndex of the directory.
+     */
+    void setUseIndex(boolean useIndex) {
+        this.useIndex = useIndex;
+    }
+
+    boolean isHashContent() {
+        return hashContent;
+    }
+
+    /**
+     * @param hashContent - Flag to compare the content of the files reported
+     * with a ContentHashCache of the directory.
+     */
+    void setHashContent(boolean hashContent) {
+        this.hashContent = hashContent;
+    }
+
+    boolean isSearchArchives() {
+        return searchArchives;
+    }
+
+    /**
+     * @param searchArchives - Flag to also search the entries of zip, jar and
+     * war archives, on a pool separate from the walk.
+     */
+    void setSearchArchives(boolean searchArchives) {
+        this.searchArchives = searchArchives;
+    }
+
+    boolean isWatch() {
+        return watch;
+    }
+
+    /**
+     * @param watch - Flag to watch the directory for changes after the walk.
+     */
+    void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    /**
+     * Builds a "glob" syntax and pattern from a list of file types entered by
+     * a user, such as "*.java, .xml conf".
+     *
+     * @param enteredTypes - File types separated by whitespace, commas or
+     * quotes.
+     * @return the syntax and pattern to provide to SpecifiedFileVisitor.
+     */
+    static String buildGlob(String enteredTypes) {
+        // regexp will remove '.' and ',', returning just file types
+        String[] strsToAdd = enteredTypes.split("\\s*(,|\\s|\"|\')\\s*");
+        boolean first = true;
+        // Using the "glob" syntax defined here:
+        // http://docs.oracle.com/javase/7/docs/api/java/nio/file/FileSystem.html#getPathMatcher(java.lang.String)
+        StringBuilder pttrBuilder = new StringBuilder("glob:*.{");
+        for (String str : strsToAdd) {
+            if (!str.isEmpty()) {
+                if (str.startsWith("."))
+                    str = str.substring(1);
+                else if (str.startsWith("*."))
+                    str = str.substring(2);
+                if (!first) {
+                    pttrBuilder.append(",");
+                } else {
+                    first = false;
+                }
+                pttrBuilder.append(str);
+            }
+        }
+        pttrBuilder.append("}");
+        return pttrBuilder.toString();
+    }
+
+    /**
+     * Splits the exclusions entered by a user, such as ".git node_modules
+     * build/", into the patterns given to SubtreeExclusions.
+     *
+     * @param enteredExclusions - Patterns separated by whitespace; commas
+     * are kept, as a glob may contain them.
+     * @return the patterns, which may be empty.
+     */
+    static List<String> splitExclusions(String enteredExclusions) {
+        List<String> patterns = new ArrayList<String>();
+        for (String pattern : enteredExclusions.trim().split("\\s+")) {
+            if (!pattern.isEmpty()) {
+                patterns.add(pattern);
+            }
+        }
+        return patterns;
+    }
+
+    static final long MS_IN_HOUR = 3600000;
+    static final long EVER_WINDOW = 0;
+    static final long THIRTY_DAY_WINDOW = MS_IN_HOUR * 720;
+    static final long WEEK_WINDOW = MS_IN_HOUR * 168;
+    static final long HOUR_WINDOW = MS_IN_HOUR;
+
+    private final Path root;
+    private final FileTypeMatcher fileTypeMatcher;
+    private final ModifiedTimeFilter modifiedTimeFilter;
+    private ContentMatcher contentMatcher;
+    private SubtreeExclusions exclusions;
+    private int newestLimit;
+    private boolean rollUp;
+    private boolean threadPerDirectory;
+    private boolean useIndex;
+    private boolean hashContent;
+    private boolean searchArchives;
+    private boolean watch;
+}
@@ -0,0 +1,539 @@
+package modifiedfilesearch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitor;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import modifiedfilesearch.data.FileInfo;
+import modifiedfilesearch.data.FileInfoImpl;
+import modifiedfilesearch.data.ResultStore;
+import modifiedfilesearch.metrics.SearchMetrics;
+import modifiedfilesearch.utils.NamedThreadFactory;
+
+/**
+ * Runs searches on threads shared by every search, so that starting a
+ * search does not create threads that outlive it. Each search uses two
+ * threads of the engine: one walks the directory, submitting the work of
+ * the walk to a ForkJoinPool shared by all searches, and the other delivers
+ * the FileInfo found to a SearchListener in batches. Files whose content is
+ * hashed are read by a separate pool of hash threads, and archives whose
+ * entries are searched are opened by a pool of archive threads, so reading
+ * files does not hold up the walk. A search of a file system where each call waits on
+ * the network may instead walk with a task per directory, on virtual threads
+ * where available, sharing a limit on the file system calls in flight with
+ * every other such search. Idle threads are released after a timeout.
+ * <p>
+ * Several searches may run at once, up to the limit given when the engine
+ * is created. A search is cancelled cooperatively: the SpecifiedFileVisitor
+ * of the walk returns TERMINATE from its next callback, and the threads of
+ * the search are interrupted so any wait ends immediately.
+ * <p>
+ * This class must not depend on AWT or Swing.
+ *
+ * @since 1.7
+ */
+class SearchEngine {
+
+    /**
+     * Receives the results of a search. Every method is invoked on the
+     * thread delivering the results of the search, and none is invoked once
+     * the search has been cancelled.
+     */
+    interface SearchListener {
+
+        /**
+         * Invoked for each batch of results found.
+         *
+         * @param batch - Results found since the last batch, which must not
+         * be retained.
+         * @param more - Flag indicating more results were already waiting.
+         * @throws IOException - If the results could not be handled, which
+         * cancels the search.
+         */
+        void resultsFound(List<FileInfo> batch, boolean more) throws IOException;
+
+        /**
+         * Invoked periodically while a search that keeps only the newest
+         * files runs, whenever they have changed, and once the walk ends.
+         * When the directory is watched, it is also invoked whenever a change
+         * alters the newest files.
+         *
+         * @param newest - The newest files found so far, newest first.
+         * @param complete - Flag indicating the initial walk has ended, so
+         * the files are exact rather than a preview.
+         * @throws IOException - If the files could not be handled, which
+         * cancels the search.
+         */
+        void newestFilesFound(List<FileInfo> newest, boolean complete) throws IOException;
+
+        /**
+         * Invoked once the initial walk of a search that rolls up its
+         * directories ends, unless the walk failed.
+         *
+         * @param root - Rollup of the directory searched.
+         * @throws IOException - If the rollups could not be handled, which
+         * cancels the search.
+         */
+        void directoryRollupsFound(DirectoryRollups.Rollup root) throws IOException;
+
+        /**
+         * Invoked when the walk of a watched directory completes. Results
+         * delivered afterwards are changes to the directory.
+         *
+         * @param unwatchedDirectories - Number of directories that could not
+         * be watched.
+         */
+        void initialWalkFinished(int unwatchedDirectories);
+
+        /**
+         * Invoked once the search ends and every result has been delivered.
+         *
+         * @param failure - Exception that ended the walk, or null if it
+         * completed.
+         */
+        void searchFinished(IOException failure);
+    }
+
+    /**
+     * Creates an engine.
+     *
+     * @param parallelism - Number of threads shared by every walk, and of
+     * threads shared by every search to hash files.
+     * @param maxConcurrentSearches - Number of searches that may run at once.
+     */
+    SearchEngine(int parallelism, int maxConcurrentSearches) {
+        this.walkPool = new ForkJoinPool(parallelism);
+        this.searchPermits = new Semaphore(maxConcurrentSearches);
+        // Two threads for each search. A task only waits in the queue while
+        // the threads of a search that just finished are returning to the
+        // pool.
+        this.searchExecutor = new ThreadPoolExecutor(maxConcurrentSearches * 2,
+                maxConcurrentSearches * 2, IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("search"));
+        this.searchExecutor.allowCoreThreadTimeOut(true);
+        this.hashExecutor = new ThreadPoolExecutor(parallelism, parallelism,
+                IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("hash"));
+        this.hashExecutor.allowCoreThreadTimeOut(true);
+        this.archiveExecutor = new ThreadPoolExecutor(parallelism, parallelism,
+                IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("archive"));
+        this.archiveExecutor.allowCoreThreadTimeOut(true);
+        this.directoryExecutor = ThreadPerDirectoryFileWalker.newDirectoryExecutor();
+    }
+
+    /**
+     * @return the SearchMetrics shared by every search of this engine.
+     */
+    SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Starts a search.
+     *
+     * @param criteria - SearchCriteria of the search.
+     * @param resultStore - Store the results are appended to, or null.
+     * @param listener - Listener the results are delivered to.
+     * @return the running Search.
+     * @throws IllegalStateException - If the maximum number of searches are
+     * already running, or the engine has been shut down.
+     */
+    Search start(SearchCriteria criteria, ResultStore resultStore, SearchListener listener) {
+        if (searchExecutor.isShutdown()) {
+            throw new IllegalStateException("The search engine has been shut down");
+        } else if (!searchPermits.tryAcquire()) {
+            throw new IllegalStateException("Too many searches are running");
+        }
+        Search search = new Search(criteria, resultStore, listener);
+        search.start();
+        return search;
+    }
+
+    /**
+     * @return flag indicating a search can be started now. A cancelled search
+     * is still counted until its threads have finished.
+     */
+    boolean canStart() {
+        return !searchExecutor.isShutdown() && searchPermits.availablePermits() > 0;
+    }
+
+    /**
+     * Cancels every running search and releases the threads of the engine.
+     */
+    void shutdown() {
+        searchExecutor.shutdownNow();
+        walkPool.shutdownNow();
+        hashExecutor.shutdownNow();
+        archiveExecutor.shutdownNow();
+        directoryExecutor.shutdownNow();
+    }
+
+    /**
+     * A single search started by the engine.
+     */
+    class Search {
+
+        private Search(SearchCriteria criteria, ResultStore resultStore,
+                SearchListener listener) {
+            this.root = criteria.getRoot();
+            this.topFiles = criteria.getNewestLimit() > 0
+                    ? new TopModifiedFiles(criteria.getNewestLimit()) : null;
+            this.rollups = criteria.isRollUp() ? new DirectoryRollups() : null;
+            this.threadPerDirectory = criteria.isThreadPerDirectory();
+            this.useIndex = criteria.isUseIndex();
+            this.hashContent = criteria.isHashContent();
+            this.searchArchives = criteria.isSearchArchives();
+            this.watch = criteria.isWatch();
+            this.listener = listener;
+            this.fileInfoQueue = new LinkedBlockingQueue<FileInfo>(FILE_INFO_QUEUE_CAPACITY);
+            this.visitor = new SpecifiedFileVisitor(fileInfoQueue, criteria.getFileTypeMatcher(),
+                    resultStore, criteria.getModifiedTimeFilter());
+            this.visitor.setMetrics(metrics);
+            this.visitor.setContentMatcher(criteria.getContentMatcher());
+            this.visitor.setTopModifiedFiles(topFiles);
+            this.visitor.setDirectoryRollups(rollups);
+            SubtreeExclusions exclusions = criteria.getExclusions();
+            if (exclusions != null && watch) {
+                exclusions.retainDirectoryRules();
+            }
+            this.visitor.setExclusions(exclusions);
+            if (searchArchives) {
+                this.visitor.setArchiveSearch(archiveExecutor);
+            }
+            this.walkTask = new SearchTask(new Runnable() {
+                @Override
+                public void run() {
+                    walk();
+                }
+            });
+            this.resultsTask = new SearchTask(new Runnable() {
+                @Override
+                public void run() {
+                    deliverResults();
+                }
+            });
+        }
+
+        private void start() {
+            metrics.addResultQueue(fileInfoQueue);
+            SearchTask rejectedTask = walkTask;
+            try {
+                searchExecutor.execute(walkTask);
+                rejectedTask = resultsTask;
+                searchExecutor.execute(resultsTask);
+            } catch (RejectedExecutionException ree) {
+                // The engine was shut down meanwhile. A task that was
+                // accepted still runs, and ends at once as it is cancelled.
+                cancel();
+                if (rejectedTask == walkTask) {
+                    walkTask.ended();
+                }
+                resultsTask.ended();
+                throw new IllegalStateException("The search could not be started", ree);
+            }
+        }
+
+        /**
+         * Cancels the search. The walk stops at its next callback and no
+         * further results are delivered. Returns without waiting for the
+         * threads of the search to finish.
+         */
+        void cancel() {
+            visitor.cancel();
+            walkTask.cancel(true);
+            resultsTask.cancel(true);
+        }
+
+        /**
+         * @return flag indicating the search was cancelled.
+         */
+        boolean isCancelled() {
+            return visitor.isCancelled();
+        }
+
+        /**
+         * Waits for the search to end, either once every result has been
+         * delivered or once it is cancelled. Returns once both threads of the
+         * search have left it.
+         *
+         * @throws InterruptedException - If the calling thread is interrupted.
+         */
+        void await() throws InterruptedException {
+            finished.await();
+        }
+
+        /**
+         * @return the exception that ended the walk or the delivery of
+         * results, or null if none did.
+         */
+        IOException getFailure() {
+            return failure;
+        }
+
+        /**
+         * Walks the directory, then watches it if requested. END_OF_WALK is
+         * added to the queue once the walk ends, unless it was cancelled.
+         */
+        private void walk() {
+            DirectoryWatcher watcher = null;
+            try {
+                FileVisitor<Path> fileVisitor = visitor;
+                if (watch) {
+                    // Changes are walked without the index, which could hide
+                    // files modified in place.
+                    ParallelFileWalker rescanWalker = new ParallelFileWalker(walkPool);
+                    rescanWalker.setMetrics(metrics);
+                    watcher = new DirectoryWatcher(fileVisitor, rescanWalker);
+                    fileVisitor = watcher.getRegisteringVisitor();
+                }
+                SnapshotIndex index = useIndex ? SnapshotIndex.load(root) : null;
+                ContentHashCache hashCache = null;
+                if (hashContent) {
+                    hashCache = ContentHashCache.load(root);
+                    visitor.setContentHashing(hashCache, hashExecutor);
+                }
+                if (threadPerDirectory) {
+                    ThreadPerDirectoryFileWalker walker = new ThreadPerDirectoryFileWalker(
+                            directoryExecutor, directoryIoPermits);
+                    walker.setMetrics(metrics);
+                    walker.setSnapshotIndex(index);
+                    walker.walkFileTree(root, fileVisitor);
+                } else {
+                    ParallelFileWalker walker = new ParallelFileWalker(walkPool);
+                    walker.setMetrics(metrics);
+                    walker.setSnapshotIndex(index);
+                    walker.walkFileTree(root, fileVisitor);
+                }
+                if (searchArchives) {
+                    visitor.awaitArchives();
+                }
+                if (hashCache != null) {
+                    visitor.awaitHashes();
+                }
+                if (visitor.isCancelled()) {
+                    return;
+                }
+                if (index != null) {
+                    index.save();
+                }
+                if (hashCache != null) {
+                    hashCache.save();
+                }
+                if (watcher != null) {
+                    unwatchedDirectories = watcher.getRegistrationFailures();
+                    fileInfoQueue.put(END_OF_INITIAL_WALK);
+                    watcher.watch();
+                }
+            } catch (InterruptedIOException iioe) {
+                // Cancelled while walking.
+                Thread.currentThread().interrupt();
+            } catch (IOException ioe) {
+                failure = ioe;
+            } catch (InterruptedException ie) {
+                // Cancelled while waiting for hashes, or while watching.
+                Thread.currentThread().interrupt();
+            } finally {
+                if (watcher != null) {
+                    try {
+                        watcher.close();
+                    } catch (IOException ioe) {
+                        // Nothing more will be watched.
+                    }
+                }
+                // Signal the end of the stream, unless the search was cancelled.
+                if (!visitor.isCancelled() && !Thread.currentThread().isInterrupted()) {
+                    try {
+                        fileInfoQueue.put(END_OF_WALK);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Blocks while the queue is empty and drains it in batches, until
+         * END_OF_WALK is received or the search is cancelled. If only the
+         * newest files are kept, waits for at most PREVIEW_INTERVAL_MS so
+         * that a preview can be delivered.
+         */
+        private void deliverResults() {
+            List<FileInfo> batch = new ArrayList<FileInfo>(DELIVERY_BATCH_SIZE);
+            try {
+                while (true) {
+                    if (topFiles == null) {
+                        batch.add(fileInfoQueue.take());
+                    } else {
+                        FileInfo first = fileInfoQueue.poll(PREVIEW_INTERVAL_MS,
+                                TimeUnit.MILLISECONDS);
+                        if (visitor.isCancelled()) {
+                            return;
+                        }
+                        deliverPreview();
+                        if (first == null) {
+                            continue;
+                        }
+                        batch.add(first);
+                    }
+                    fileInfoQueue.drainTo(batch, DELIVERY_BATCH_SIZE - 1);
+                    // Deliver the results between markers, then the marker.
+                    int start = 0;
+                    for (int i = 0; i <= batch.size(); i++) {
+                        if (i < batch.size() && !isMarker(batch.get(i))) {
+                            continue;
+                        }
+                        if (visitor.isCancelled()) {
+                            return;
+                        }
+                        if (i > start) {
+                            long deliveryStart = System.nanoTime();
+                            listener.resultsFound(batch.subList(start, i),
+                                    i < batch.size() || !fileInfoQueue.isEmpty());
+                            metrics.resultsDelivered(i - start, System.nanoTime() - deliveryStart);
+                        }
+                        if (i < batch.size()) {
+                            // The walk, or initial walk, has ended.
+                            if (topFiles != null) {
+                                listener.newestFilesFound(topFiles.snapshot(), true);
+                                previewVersion = topFiles.getVersion();
+                            }
+                            if (rollups != null && !initialWalkEnded
+                                    && rollups.getRoot() != null) {
+                                listener.directoryRollupsFound(rollups.getRoot());
+                            }
+                            initialWalkEnded = true;
+                            if (batch.get(i) == END_OF_WALK) {
+                                listener.searchFinished(failure);
+                                return;
+                            }
+                            listener.initialWalkFinished(unwatchedDirectories);
+                        }
+                        start = i + 1;
+                    }
+                    batch.clear();
+                }
+            } catch (IOException ioe) {
+                failure = ioe;
+                cancel();
+            } catch (InterruptedException ie) {
+                // Cancelled.
+            }
+        }
+
+        /**
+         * Delivers a preview of the newest files if they have changed since
+         * the last was delivered and PREVIEW_INTERVAL_MS has passed.
+         */
+        private void deliverPreview() throws IOException {
+            long now = System.nanoTime();
+            if (now - lastPreview < TimeUnit.MILLISECONDS.toNanos(PREVIEW_INTERVAL_MS)) {
+                return;
+            }
+            long version = topFiles.getVersion();
+            if (version != previewVersion) {
+                listener.newestFilesFound(topFiles.snapshot(), initialWalkEnded);
+                previewVersion = version;
+            }
+            lastPreview = now;
+        }
+
+        private boolean isMarker(FileInfo info) {
+            return info == END_OF_WALK || info == END_OF_INITIAL_WALK;
+        }
+
+        /**
+         * A task of the search, which releases the permit of the search once
+         * both tasks have returned from their thread. The permit is not
+         * released by done(), which cancel invokes at once, while the thread
+         * of a cancelled task may still be running it. A task cancelled before
+         * it started still returns at once when the executor runs it.
+         */
+        private class SearchTask extends FutureTask<Void> {
+
+            private SearchTask(Runnable runnable) {
+                super(runnable, null);
+            }
+
+            @Override
+            public void run() {
+                try {
+                    super.run();
+                } finally {
+                    ended();
+                }
+            }
+
+            private void ended() {
+                if (ended.compareAndSet(false, true) && runningTasks.decrementAndGet() == 0) {
+                    metrics.removeResultQueue(fileInfoQueue);
+                    searchPermits.release();
+                    finished.countDown();
+                }
+            }
+
+            private final AtomicBoolean ended = new AtomicBoolean();
+        }
+        private final Path root;
+        private final TopModifiedFiles topFiles;
+        private final DirectoryRollups rollups;
+        private final boolean threadPerDirectory;
+        private final boolean useIndex;
+        private final boolean hashContent;
+        private final boolean searchArchives;
+        private final boolean watch;
+        private final SearchListener listener;
+        private final BlockingQueue<FileInfo> fileInfoQueue;
+        private final SpecifiedFileVisitor visitor;
+        private final AtomicInteger runningTasks = new AtomicInteger(2);
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final SearchTask walkTask;
+        private final SearchTask resultsTask;
+        private volatile IOException failure;
+        private volatile int unwatchedDirectories;
+        // Only used by the thread delivering results.
+        private long lastPreview = System.nanoTime();
+        private long previewVersion;
+        private boolean initialWalkEnded;
+    }
+
+    private static final int FILE_INFO_QUEUE_CAPACITY = 8192;
+    private static final int DELIVERY_BATCH_SIZE = 256;
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+    private static final long PREVIEW_INTERVAL_MS = 500;
+    /**
+     * The most directory listings and reads of attributes in flight at once
+     * across every search walking with a task per directory.
+     */
+    private static final int MAX_DIRECTORY_IO_IN_FLIGHT = 1024;
+    /**
+     * Marks the end of the FileInfo stream produced by a walk.
+     */
+    private static final FileInfo END_OF_WALK = new FileInfoImpl(null, null);
+    /**
+     * Marks the end of the initial walk when the directory is watched.
+     */
+    private static final FileInfo END_OF_INITIAL_WALK = new FileInfoImpl(null, null);
+    private final SearchMetrics metrics = new SearchMetrics();
+    private final ForkJoinPool walkPool;
+    private final Semaphore searchPermits;
+    private final ThreadPoolExecutor searchExecutor;
+    private final ThreadPoolExecutor hashExecutor;
+    private final ThreadPoolExecutor archiveExecutor;
+    private final ExecutorService directoryExecutor;
+    private final Semaphore directoryIoPermits = new Semaphore(MAX_DIRECTORY_IO_IN_FLIGHT);
+}
@@ -0,0 +1,370 @@
+package modifiedfilesearch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent snapshot of a directory tree that allows a later walk of the
+ * same tree to reuse the attributes recorded for directories that have not
+ * changed. A directory is considered unchanged when its own modification
+ * time is the same as when it was recorded; the entries of such a directory
+ * are not listed or read again, though each subdirectory is still checked.
+ * <p>
+ * Creating, deleting or renaming an entry updates the modification time of
+ * its directory, but modifying the content of a file does not. Attributes
+ * reused from the index are therefore only as current as the directory
+ * modification times, which is why the index must be requested explicitly.
+ * <p>
+ * The snapshot loaded is never modified; the directories recorded during a
+ * walk form the next snapshot, written by save().
+ *
+ * @since 1.7
+ */
+class SnapshotIndex {
+
+    /**
+     * Loads the snapshot recorded by the last walk of the directory
+     * specified. If there is no snapshot, or it cannot be read, every
+     * directory will be treated as changed.
+     *
+     * @param root - Root of the directory tree that will be walked.
+     * @return a SnapshotIndex for the root.
+     */
+    static SnapshotIndex load(Path root) {
+        SnapshotIndex index = new SnapshotIndex(root);
+        try {
+            index.read();
+        } catch (NoSuchFileException nsfe) {
+            // First walk of this root.
+        } catch (IOException ioe) {
+            System.err.println("Ignoring unreadable index " + index.indexFile + ": "
+                    + ioe.getMessage());
+            index.previous.clear();
+        }
+        return index;
+    }
+
+    private SnapshotIndex(Path root) {
+        this.root = root;
+        this.indexFile = storageFileFor(root, "index", ".idx");
+        this.walkStarted = System.currentTimeMillis();
+    }
+
+    /**
+     * Looks up the directory recorded by the previous walk, if it may be
+     * reused. Directories whose modification time is too close to the start
+     * of the previous walk are never reused, since a change made in the same
+     * clock tick would not alter the modification time.
+     *
+     * @param dir - Directory being walked.
+     * @param attrs - Current attributes of the directory.
+     * @return the recorded directory, or null if it must be listed again.
+     */
+    DirectorySnapshot lookup(Path dir, BasicFileAttributes attrs) {
+        DirectorySnapshot snapshot = previous.get(relativize(dir));
+        if (snapshot == null) {
+            return null;
+        }
+        long modified = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        if (snapshot.lastModified != modified
+                || attrs.lastModifiedTime().toMillis() >= previousWalkStarted - RACY_WINDOW_MS) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Records a directory and its entries in the next snapshot.
+     *
+     * @param dir - Directory that was walked.
+     * @param snapshot - The directory's entries.
+     */
+    void record(Path dir, DirectorySnapshot snapshot) {
+        next.put(relativize(dir), snapshot);
+    }
+
+    /**
+     * Writes the directories recorded during the walk, replacing the
+     * previous snapshot. Should only be invoked after a complete walk.
+     *
+     * @throws IOException - If the index could not be written.
+     */
+    void save() throws IOException {
+        Files.createDirectories(indexFile.getParent());
+        Path tempFile = Files.createTempFile(indexFile.getParent(), "index", ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(tempFile);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+                out.writeInt(MAGIC);
+                out.writeLong(walkStarted);
+                out.writeInt(next.size());
+                for (Map.Entry<String, DirectorySnapshot> entry : next.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    entry.getValue().write(out);
+                }
+            }
+            try {
+                Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private void read() throws IOException {
+        try (InputStream is = Files.newInputStream(indexFile);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(is))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an index file");
+            }
+            previousWalkStarted = in.readLong();
+            int dirCount = in.readInt();
+            for (int i = 0; i < dirCount; i++) {
+                String dir = in.readUTF();
+                previous.put(dir, DirectorySnapshot.read(in));
+            }
+        }
+    }
+
+    private String relativize(Path dir) {
+        return root.relativize(dir).toString();
+    }
+
+    /**
+     * Index files, and other files recorded for a root, are kept in the
+     * user's home directory, named by a digest of the absolute path of the
+     * root.
+     *
+     * @param root - Root the file is recorded for.
+     * @param directory - Subdirectory of INDEX_DIRECTORY for this kind of
+     * file.
+     * @param extension - Extension of the file name, including the dot.
+     * @return the Path of the file.
+     */
+    static Path storageFileFor(Path root, String directory, String extension) {
+        String key = root.toAbsolutePath().normalize().toString();
+        StringBuilder name = new StringBuilder();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (byte b : digest.digest(key.getBytes(StandardCharsets.UTF_8))) {
+                name.append(String.format("%02x", b));
+            }
+        } catch (NoSuchAlgorithmException nsae) {
+            name.append(Integer.toHexString(key.hashCode()));
+        }
+        return Paths.get(System.getProperty("user.home"), INDEX_DIRECTORY, directory,
+                name.append(extension).toString());
+    }
+
+    /**
+     * The entries of a single directory, stored in parallel arrays.
+     */
+    static class DirectorySnapshot {
+
+        /**
+         * @param dirAttrs - Attributes of the directory.
+         * @param names - File names of the directory's entries.
+         * @param entryAttrs - Attributes of the directory's entries.
+         */
+        DirectorySnapshot(BasicFileAttributes dirAttrs, List<String> names,
+                List<BasicFileAttributes> entryAttrs) {
+            int count = names.size();
+            this.lastModified = dirAttrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            this.names = names.toArray(new String[count]);
+            this.sizes = new long[count];
+            this.modifiedTimes = new long[count];
+            this.creationTimes = new long[count];
+            this.fileKeys = new String[count];
+            this.types = new byte[count];
+            for (int i = 0; i < count; i++) {
+                BasicFileAttributes attrs = entryAttrs.get(i);
+                sizes[i] = attrs.size();
+                modifiedTimes[i] = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+                creationTimes[i] = attrs.creationTime().to(TimeUnit.NANOSECONDS);
+                fileKeys[i] = attrs.fileKey() == null ? null : attrs.fileKey().toString();
+                types[i] = attrs.isDirectory() ? TYPE_DIRECTORY
+                        : attrs.isRegularFile() ? TYPE_REGULAR
+                        : attrs.isSymbolicLink() ? TYPE_LINK : TYPE_OTHER;
+            }
+        }
+
+        private DirectorySnapshot(long lastModified, int count) {
+            this.lastModified = lastModified;
+            this.names = new String[count];
+            this.sizes = new long[count];
+            this.modifiedTimes = new long[count];
+            this.creationTimes = new long[count];
+            this.fileKeys = new String[count];
+            this.types = new byte[count];
+        }
+
+        /**
+         * @return the number of entries in the directory.
+         */
+        int getEntryCount() {
+            return names.length;
+        }
+
+        /**
+         * @param i - Index of the entry.
+         * @return the file name of the entry.
+         */
+        String getName(int i) {
+            return names[i];
+        }
+
+        /**
+         * @param i - Index of the entry.
+         * @return flag indicating the entry is a directory.
+         */
+        boolean isDirectory(int i) {
+            return types[i] == TYPE_DIRECTORY;
+        }
+
+        /**
+         * @param i - Index of the entry.
+         * @return the attributes recorded for the entry.
+         */
+        BasicFileAttributes getAttributes(int i) {
+            return new SnapshotFileAttributes(this, i);
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeLong(lastModified);
+            out.writeInt(names.length);
+            for (int i = 0; i < names.length; i++) {
+                out.writeUTF(names[i]);
+                out.writeByte(types[i]);
+                out.writeLong(sizes[i]);
+                out.writeLong(modifiedTimes[i]);
+                out.writeLong(creationTimes[i]);
+                out.writeBoolean(fileKeys[i] != null);
+                if (fileKeys[i] != null) {
+                    out.writeUTF(fileKeys[i]);
+                }
+            }
+        }
+
+        private static DirectorySnapshot read(DataInputStream in) throws IOException {
+            long lastModified = in.readLong();
+            DirectorySnapshot snapshot = new DirectorySnapshot(lastModified, in.readInt());
+            for (int i = 0; i < snapshot.names.length; i++) {
+                snapshot.names[i] = in.readUTF();
+                snapshot.types[i] = in.readByte();
+                snapshot.sizes[i] = in.readLong();
+                snapshot.modifiedTimes[i] = in.readLong();
+                snapshot.creationTimes[i] = in.readLong();
+                if (in.readBoolean()) {
+                    snapshot.fileKeys[i] = in.readUTF();
+                }
+            }
+            return snapshot;
+        }
+        private final long lastModified;
+        private final String[] names;
+        private final long[] sizes;
+        private final long[] modifiedTimes;
+        private final long[] creationTimes;
+        private final String[] fileKeys;
+        private final byte[] types;
+    }
+
+    /**
+     * BasicFileAttributes of a single entry, as recorded in a snapshot. The
+     * last access time is not recorded and is reported as the last
+     * modified time.
+     */
+    private static class SnapshotFileAttributes implements BasicFileAttributes {
+
+        private SnapshotFileAttributes(DirectorySnapshot snapshot, int index) {
+            this.snapshot = snapshot;
+            this.index = index;
+        }
+
+        @Override
+        public FileTime lastModifiedTime() {
+            return FileTime.from(snapshot.modifiedTimes[index], TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public FileTime lastAccessTime() {
+            return lastModifiedTime();
+        }
+
+        @Override
+        public FileTime creationTime() {
+            return FileTime.from(snapshot.creationTimes[index], TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public boolean isRegularFile() {
+            return snapshot.types[index] == TYPE_REGULAR;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return snapshot.types[index] == TYPE_DIRECTORY;
+        }
+
+        @Override
+        public boolean isSymbolicLink() {
+            return snapshot.types[index] == TYPE_LINK;
+        }
+
+        @Override
+        public boolean isOther() {
+            return snapshot.types[index] == TYPE_OTHER;
+        }
+
+        @Override
+        public long size() {
+            return snapshot.sizes[index];
+        }
+
+        @Override
+        public Object fileKey() {
+            return snapshot.fileKeys[index];
+        }
+        private final DirectorySnapshot snapshot;
+        private final int index;
+    }
+
+    static final String INDEX_DIRECTORY = ".modifiedfilesearch";
+    private static final int MAGIC = 0x4d465331;
+    private static final long RACY_WINDOW_MS = 2000;
+    private static final byte TYPE_REGULAR = 0;
+    private static final byte TYPE_DIRECTORY = 1;
+    private static final byte TYPE_LINK = 2;
+    private static final byte TYPE_OTHER = 3;
+    private final Path root;
+    private final Path indexFile;
+    private final long walkStarted;
+    private long previousWalkStarted;
+    private final Map<String, DirectorySnapshot> previous =
+            new ConcurrentHashMap<String, DirectorySnapshot>();
+    private final Map<String, DirectorySnapshot> next =
+            new ConcurrentHashMap<String, DirectorySnapshot>();
+}
@@ -3,18 +3,25 @@ package modifiedfilesearch;
 import modifiedfilesearch.data.FileInfo;
 import java.io.IOException;
 import java.nio.file.AccessDeniedException;
-import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.PathMatcher;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import modifiedfilesearch.data.ContentChange;
 import modifiedfilesearch.data.FileInfoImpl;
+import modifiedfilesearch.data.ResultStore;
+import modifiedfilesearch.metrics.SearchMetrics;
 
 /**
  * A visitor of files that records path and attribute information if a file
- * matches a specified syntax and pattern.
+ * matches a specified syntax and pattern. This visitor is thread safe provided
+ * the Queue it records to is, so it may be used with ParallelFileWalker.
  *
  * @author Brendan Cashman
  * @since 1.7
@@ -27,25 +34,93 @@ class SpecifiedFileVisitor implements FileVisitor<Path> {
      *
      * @param fileInfoQueue Collection where file information will be stored for
      * files matching specified syntax and pattern. All directories visited will
-     * also be added.
+     * also be added. If the queue is bounded, the walk will block while it is
+     * full.
      * @param syntaxAndPattern Syntax and pattern for file types whose FileInfo
      * will be stored. 
      *
      */
-    SpecifiedFileVisitor(Queue<FileInfo> fileInfoQueue, String syntaxAndPattern) {
+    SpecifiedFileVisitor(BlockingQueue<FileInfo> fileInfoQueue, String syntaxAndPattern) {
+        this(fileInfoQueue, FileTypeMatcher.compile(syntaxAndPattern));
+    }
+
+    /**
+     * Creates a SpecifiedFileVisitor to record information about the types
+     * of files matched by the FileTypeMatcher.
+     *
+     * @param fileInfoQueue Collection where file information will be stored for
+     * matching files. All directories visited will also be added.
+     * @param fileTypeMatcher Matcher for file types whose FileInfo will be
+     * stored.
+     */
+    SpecifiedFileVisitor(BlockingQueue<FileInfo> fileInfoQueue, FileTypeMatcher fileTypeMatcher) {
+        this(fileInfoQueue, fileTypeMatcher, null);
+    }
+
+    /**
+     * Creates a SpecifiedFileVisitor that appends the information it records
+     * to a ResultStore. The FileInfo objects added to the queue are views of
+     * the stored results.
+     *
+     * @param fileInfoQueue Collection where file information will be stored for
+     * matching files. All directories visited will also be added.
+     * @param fileTypeMatcher Matcher for file types whose FileInfo will be
+     * stored.
+     * @param resultStore Store the results are appended to, or null to only
+     * add them to the queue.
+     */
+    SpecifiedFileVisitor(BlockingQueue<FileInfo> fileInfoQueue, FileTypeMatcher fileTypeMatcher,
+            ResultStore resultStore) {
+        this(fileInfoQueue, fileTypeMatcher, resultStore, null);
+    }
+
+    /**
+     * Creates a SpecifiedFileVisitor that judges matching files against the
+     * time window of a ModifiedTimeFilter as they are visited, counting the
+     * unmodified files. If the filter only reports modified files, neither
+     * unmodified files nor directories are recorded, but files and
+     * directories that could not be accessed still are.
+     *
+     * @param fileInfoQueue Collection where file information will be stored for
+     * matching files.
+     * @param fileTypeMatcher Matcher for file types whose FileInfo will be
+     * stored.
+     * @param resultStore Store the results are appended to, or null to only
+     * add them to the queue.
+     * @param modifiedTimeFilter Filter that files are judged against, or null
+     * to record every matching file without judging it.
+     */
+    SpecifiedFileVisitor(BlockingQueue<FileInfo> fileInfoQueue, FileTypeMatcher fileTypeMatcher,
+            ResultStore resultStore, ModifiedTimeFilter modifiedTimeFilter) {
         this.fileInfoQueue = fileInfoQueue;
-        this.fileTypeMatcher = FileSystems.getDefault().getPathMatcher(syntaxAndPattern);
+        this.fileTypeMatcher = fileTypeMatcher;
+        this.resultStore = resultStore;
+        this.modifiedTimeFilter = modifiedTimeFilter;
+        this.modifiedOnly = modifiedTimeFilter != null && modifiedTimeFilter.isModifiedOnly();
     }
 
     /**
      * Invoked for a directory before entries in the directory are visited.
+     * The subtree of an excluded directory is skipped, and the directory is
+     * not recorded.
      *
      */
     @Override
     public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-        FileInfoImpl fileInfo = new FileInfoImpl(dir, attrs);
-        fileInfoQueue.add(fileInfo);
-        return FileVisitResult.CONTINUE;
+        if (cancelled) {
+            return FileVisitResult.TERMINATE;
+        }
+        countVisited();
+        if (exclusions != null && exclusions.excludesDirectory(dir)) {
+            return FileVisitResult.SKIP_SUBTREE;
+        }
+        if (rollups != null) {
+            rollups.directoryOpened(dir);
+        }
+        if (modifiedOnly || topFiles != null) {
+            return FileVisitResult.CONTINUE;
+        }
+        return record(dir, attrs);
     }
 
     /**
@@ -54,23 +129,239 @@ class SpecifiedFileVisitor implements FileVisitor<Path> {
      */
     @Override
     public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-        if (fileTypeMatcher.matches(file.getFileName())) {
-            FileInfoImpl fileInfo = new FileInfoImpl(file, attrs);
-            fileInfoQueue.add(fileInfo);
+        if (cancelled) {
+            return FileVisitResult.TERMINATE;
+        }
+        countVisited();
+        if (exclusions != null && exclusions.excludesFile(file, attrs.isDirectory())) {
+            return FileVisitResult.CONTINUE;
+        }
+        if (archiveExecutor != null && ArchiveWalker.isArchive(file)
+                && searchArchive(file) == FileVisitResult.TERMINATE) {
+            return FileVisitResult.TERMINATE;
+        }
+        if (!fileTypeMatcher.matches(file)) {
+            if (rollups != null) {
+                rollups.fileVisited(file, attrs, false, false);
+            }
+            return FileVisitResult.CONTINUE;
+        }
+        if (metrics != null) {
+            metrics.fileMatched();
+        }
+        boolean modified = true;
+        if (modifiedTimeFilter != null && !modifiedTimeFilter.isModified(attrs)) {
+            modifiedTimeFilter.countUnmodified();
+            modified = false;
+        }
+        if (rollups != null) {
+            rollups.fileVisited(file, attrs, true, modified);
+        }
+        if (!modified && modifiedOnly) {
+            return FileVisitResult.CONTINUE;
+        }
+        if (contentMatcher == null) {
+            return recordMatch(file, attrs, null);
+        } else if (modified) {
+            return searchContent(file, attrs);
         }
         return FileVisitResult.CONTINUE;
     }
 
+    /**
+     * Records a file if its content matches. Files that cannot be read are
+     * recorded as inaccessible if access was denied, and are otherwise
+     * skipped, since they have usually been deleted during the walk.
+     */
+    private FileVisitResult searchContent(Path file, BasicFileAttributes attrs) {
+        int[] matchingLines;
+        try {
+            matchingLines = contentMatcher.findMatchingLines(file);
+        } catch (AccessDeniedException ade) {
+            return record(file, null);
+        } catch (IOException ioe) {
+            return FileVisitResult.CONTINUE;
+        }
+        if (matchingLines.length == 0) {
+            return FileVisitResult.CONTINUE;
+        }
+        return recordMatch(file, attrs, matchingLines);
+    }
+
+    /**
+     * Records a matching file, first hashing its content if content hashing
+     * is enabled. A file that must be read is hashed by a task of the hash
+     * executor, which records it once hashed; the walk only waits if too
+     * many files are already waiting to be hashed.
+     */
+    private FileVisitResult recordMatch(final Path file, final BasicFileAttributes attrs,
+            final int[] matchingLines) {
+        if (hashCache == null || !attrs.isRegularFile()) {
+            return record(file, attrs, matchingLines, null);
+        }
+        ContentChange cached = hashCache.lookup(file, attrs);
+        if (cached != null) {
+            return record(file, attrs, matchingLines, cached);
+        }
+        try {
+            while (!pendingHashes.tryAcquire(OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                if (cancelled) {
+                    return FileVisitResult.TERMINATE;
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return FileVisitResult.TERMINATE;
+        }
+        try {
+            hashExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!cancelled) {
+                            hashAndRecord(file, attrs, matchingLines);
+                        }
+                    } finally {
+                        pendingHashes.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ree) {
+            // The executor was shut down, which ends the search.
+            pendingHashes.release();
+            return FileVisitResult.TERMINATE;
+        }
+        return FileVisitResult.CONTINUE;
+    }
+
+    /**
+     * Hashes a file and records it. Files that cannot be read are recorded
+     * as inaccessible if access was denied, and skipped if they were deleted
+     * during the walk. A file that otherwise cannot be read, such as a
+     * locked file, has already matched, so it is recorded without a
+     * ContentChange.
+     */
+    private void hashAndRecord(Path file, BasicFileAttributes attrs, int[] matchingLines) {
+        long hash;
+        try {
+            hash = ContentHasher.hash(file);
+        } catch (AccessDeniedException ade) {
+            record(file, null, null, null);
+            return;
+        } catch (NoSuchFileException nsfe) {
+            return;
+        } catch (IOException ioe) {
+            record(file, attrs, matchingLines, null);
+            return;
+        }
+        if (metrics != null) {
+            metrics.fileHashed();
+        }
+        record(file, attrs, matchingLines, hashCache.update(file, attrs, hash));
+    }
+
+    /**
+     * Searches the entries of an archive on the archive executor. The walk
+     * only waits if too many archives are already waiting to be searched.
+     */
+    private FileVisitResult searchArchive(final Path archive) {
+        try {
+            while (!pendingArchives.tryAcquire(OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                if (cancelled) {
+                    return FileVisitResult.TERMINATE;
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return FileVisitResult.TERMINATE;
+        }
+        try {
+            archiveExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!cancelled) {
+                            ArchiveWalker.walk(archive, new ArchiveWalker.EntryVisitor() {
+                                @Override
+                                public FileVisitResult visitEntry(Path entry, Path displayPath,
+                                        BasicFileAttributes attrs) {
+                                    return visitArchiveEntry(entry, displayPath, attrs);
+                                }
+                            });
+                        }
+                    } catch (IOException ioe) {
+                        // An archive that cannot be read, or is not valid,
+                        // is still reported as a file if it matches.
+                    } finally {
+                        pendingArchives.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ree) {
+            // The executor was shut down, which ends the search.
+            pendingArchives.release();
+            return FileVisitResult.TERMINATE;
+        }
+        return FileVisitResult.CONTINUE;
+    }
+
+    /**
+     * Judges an entry of an archive as visitFile judges a file. Entries are
+     * recorded with their display path, and are neither hashed nor rolled
+     * up.
+     */
+    private FileVisitResult visitArchiveEntry(Path entry, Path displayPath,
+            BasicFileAttributes attrs) {
+        if (cancelled) {
+            return FileVisitResult.TERMINATE;
+        }
+        countVisited();
+        if (!fileTypeMatcher.matches(entry)) {
+            return FileVisitResult.CONTINUE;
+        }
+        if (metrics != null) {
+            metrics.fileMatched();
+        }
+        boolean modified = true;
+        if (modifiedTimeFilter != null && !modifiedTimeFilter.isModified(attrs)) {
+            modifiedTimeFilter.countUnmodified();
+            modified = false;
+        }
+        if (contentMatcher == null) {
+            if (!modified && modifiedOnly) {
+                return FileVisitResult.CONTINUE;
+            }
+            return record(displayPath, attrs, null, null);
+        } else if (!modified) {
+            return FileVisitResult.CONTINUE;
+        }
+        int[] matchingLines;
+        try {
+            matchingLines = contentMatcher.findMatchingLines(entry);
+        } catch (IOException ioe) {
+            return FileVisitResult.CONTINUE;
+        }
+        if (matchingLines.length == 0) {
+            return FileVisitResult.CONTINUE;
+        }
+        return record(displayPath, attrs, matchingLines, null);
+    }
+
     /**
      * Invoked for a file that could not be visited.
      *
      */
     @Override
     public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-        if (exc != null) {
+        if (cancelled) {
+            return FileVisitResult.TERMINATE;
+        } else if (exclusions != null && exclusions.excludesFile(file, true)) {
+            // Usually a directory that could not be opened.
+            return FileVisitResult.CONTINUE;
+        } else if (exc != null) {
             // Want to record files that were inaccessable, but not stop
             if ( exc instanceof AccessDeniedException )
-                fileInfoQueue.add(new FileInfoImpl(file, null));
+                return record(file, null);
             else
                 throw exc;
         }
@@ -84,16 +375,218 @@ class SpecifiedFileVisitor implements FileVisitor<Path> {
      */
     @Override
     public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        if (cancelled) {
+            return FileVisitResult.TERMINATE;
+        }
+        if (rollups != null) {
+            rollups.directoryCompleted(dir);
+        }
+        if (exclusions != null) {
+            exclusions.directoryCompleted(dir);
+        }
         if (exc != null) {
             // Want to record directories that were inaccessable, but not stop
             if ( exc instanceof AccessDeniedException )
-                fileInfoQueue.add(new FileInfoImpl(dir, null));
+                return record(dir, null);
             else
                 throw exc;
         }
         return FileVisitResult.CONTINUE;
     }
-    private final Queue<FileInfo> fileInfoQueue;
-    private final PathMatcher fileTypeMatcher;
-    
+
+    /**
+     * Sets the SearchMetrics that entries visited, files matched and results
+     * queued are counted in. Must be set before the walk starts.
+     *
+     * @param metrics - SearchMetrics to count in, or null.
+     */
+    void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    private void countVisited() {
+        if (metrics != null) {
+            metrics.entryVisited();
+        }
+    }
+
+    /**
+     * Sets the ContentMatcher that matching files are searched with. Once
+     * set, a file is only recorded if it passes the time filter and its
+     * content matches; unmodified files are not searched. Must be set before
+     * the walk starts.
+     *
+     * @param contentMatcher - ContentMatcher to search with, or null to
+     * record files without searching their content.
+     */
+    void setContentMatcher(ContentMatcher contentMatcher) {
+        this.contentMatcher = contentMatcher;
+    }
+
+    /**
+     * Enables content hashing. Once enabled, each regular file recorded is
+     * first compared with a ContentHashCache, and hashed on the executor
+     * provided unless the hash recorded by the cache can be reused. Must be
+     * set before the walk starts.
+     *
+     * @param hashCache - ContentHashCache the files are compared with.
+     * @param hashExecutor - Executor the files are hashed on.
+     */
+    void setContentHashing(ContentHashCache hashCache, Executor hashExecutor) {
+        this.hashCache = hashCache;
+        this.hashExecutor = hashExecutor;
+    }
+
+    /**
+     * Keeps only the newest files. Once set, files that would be recorded
+     * are offered to the TopModifiedFiles instead of the queue, and
+     * directories are not recorded; files and directories that could not be
+     * accessed still are. Must be set before the walk starts.
+     *
+     * @param topFiles - TopModifiedFiles the files are offered to.
+     */
+    void setTopModifiedFiles(TopModifiedFiles topFiles) {
+        this.topFiles = topFiles;
+    }
+
+    /**
+     * Rolls up the files of each directory. Once set, every directory walked
+     * is opened and completed in the DirectoryRollups, and every file is
+     * counted in it. Must be set before the walk starts.
+     *
+     * @param rollups - DirectoryRollups the walk is totalled in.
+     */
+    void setDirectoryRollups(DirectoryRollups rollups) {
+        this.rollups = rollups;
+    }
+
+    /**
+     * Excludes entries from the walk. Once set, the subtree of an excluded
+     * directory is skipped, and excluded files are neither recorded nor
+     * rolled up. Must be set before the walk starts.
+     *
+     * @param exclusions - SubtreeExclusions of the walk.
+     */
+    void setExclusions(SubtreeExclusions exclusions) {
+        this.exclusions = exclusions;
+    }
+
+    /**
+     * Enables searching inside archives. Once enabled, the entries of each
+     * zip, jar or war archive visited are walked by a task of the executor
+     * provided, and judged as files are. Must be set before the walk starts.
+     *
+     * @param archiveExecutor - Executor the archives are searched on.
+     */
+    void setArchiveSearch(Executor archiveExecutor) {
+        this.archiveExecutor = archiveExecutor;
+    }
+
+    /**
+     * Waits until every archive waiting to be searched has been searched, or
+     * abandoned because the walk was cancelled. Should be invoked once the
+     * walk has completed.
+     *
+     * @throws InterruptedException - If the calling thread is interrupted.
+     */
+    void awaitArchives() throws InterruptedException {
+        pendingArchives.acquire(MAX_PENDING_ARCHIVES);
+        pendingArchives.release(MAX_PENDING_ARCHIVES);
+    }
+
+    /**
+     * Waits until every file waiting to be hashed has been hashed and
+     * recorded, or abandoned because the walk was cancelled. Should be
+     * invoked once the walk has completed.
+     *
+     * @throws InterruptedException - If the calling thread is interrupted.
+     */
+    void awaitHashes() throws InterruptedException {
+        pendingHashes.acquire(MAX_PENDING_HASHES);
+        pendingHashes.release(MAX_PENDING_HASHES);
+    }
+
+    /**
+     * Cancels the walk. Every callback made after this returns TERMINATE,
+     * including those made on other threads of a parallel walk, and a
+     * callback waiting for space in the queue stops waiting.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return flag indicating the walk has been cancelled.
+     */
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    private FileVisitResult record(Path path, BasicFileAttributes attrs) {
+        return record(path, attrs, null, null);
+    }
+
+    /**
+     * Adds a FileInfo to the queue, waiting for space if necessary, or
+     * offers an accessible file to the TopModifiedFiles if only the newest
+     * files are kept. If the walk is cancelled, or the walking thread is
+     * interrupted, while waiting, the walk is terminated.
+     */
+    private FileVisitResult record(Path path, BasicFileAttributes attrs, int[] matchingLines,
+            ContentChange contentChange) {
+        if (topFiles != null && attrs != null) {
+            topFiles.offer(path, attrs, matchingLines, contentChange);
+            return FileVisitResult.CONTINUE;
+        }
+        FileInfo fileInfo;
+        if (resultStore != null) {
+            fileInfo = resultStore.get(resultStore.append(path, attrs, matchingLines,
+                    contentChange));
+        } else {
+            fileInfo = new FileInfoImpl(path, attrs, matchingLines, contentChange);
+        }
+        try {
+            // The queue is offered to repeatedly, rather than put to, so
+            // that cancellation is noticed while the queue is full.
+            long start = metrics == null ? 0 : System.nanoTime();
+            while (!fileInfoQueue.offer(fileInfo, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                if (cancelled) {
+                    return FileVisitResult.TERMINATE;
+                }
+            }
+            if (metrics != null) {
+                metrics.resultQueued(System.nanoTime() - start);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return FileVisitResult.TERMINATE;
+        }
+        return FileVisitResult.CONTINUE;
+    }
+    private static final long OFFER_TIMEOUT_MS = 10;
+    /**
+     * The most files waiting to be hashed before the walk waits.
+     */
+    private static final int MAX_PENDING_HASHES = 1024;
+    /**
+     * The most archives waiting to be searched before the walk waits.
+     */
+    private static final int MAX_PENDING_ARCHIVES = 256;
+    private final BlockingQueue<FileInfo> fileInfoQueue;
+    private final FileTypeMatcher fileTypeMatcher;
+    private final ResultStore resultStore;
+    private final ModifiedTimeFilter modifiedTimeFilter;
+    private final boolean modifiedOnly;
+    private volatile boolean cancelled;
+    private SearchMetrics metrics;
+    private ContentMatcher contentMatcher;
+    private ContentHashCache hashCache;
+    private Executor hashExecutor;
+    private TopModifiedFiles topFiles;
+    private DirectoryRollups rollups;
+    private SubtreeExclusions exclusions;
+    private Executor archiveExecutor;
+    private final Semaphore pendingHashes = new Semaphore(MAX_PENDING_HASHES);
+    private final Semaphore pendingArchives = new Semaphore(MAX_PENDING_ARCHIVES);
+
 }
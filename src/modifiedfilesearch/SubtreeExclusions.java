@@ -0,0 +1,304 @@
+package modifiedfilesearch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which entries of a walk are excluded, so that SpecifiedFileVisitor
+ * can skip the subtree of an excluded directory, such as .git, node_modules
+ * or target, without listing anything beneath it.
+ * <p>
+ * Rules follow the pattern format of .gitignore files: a pattern without a
+ * '/' matches the name of an entry at any depth, a pattern containing a '/'
+ * matches the path of an entry relative to the directory the rule was found
+ * in, a trailing '/' only matches directories, and a leading '!' includes
+ * again an entry excluded by an earlier rule. The last rule matching an
+ * entry decides, and rules found deeper in the tree take precedence. The
+ * rules given when the walk starts apply relative to the root, and every
+ * pattern is compiled once; a name without glob characters is compared
+ * with the name of an entry rather than matched by a PathMatcher.
+ * <p>
+ * If ignore files are read, the rules of the .gitignore file of each
+ * directory that is not excluded are added to those of its parent before
+ * the entries of the directory are visited. As the walkers visit a
+ * directory before its entries, the rules of a directory are always known
+ * before they are needed, and they are forgotten once its subtree has been
+ * walked, unless the walk is watched for changes afterwards. An instance is
+ * used for a single walk, and is thread safe.
+ *
+ * @since 1.7
+ */
+class SubtreeExclusions {
+
+    /**
+     * Compiles the exclusions of a walk.
+     *
+     * @param root - Directory walked, which is never excluded.
+     * @param patterns - Rules applying to the whole walk, in the format of
+     * .gitignore lines.
+     * @param readIgnoreFiles - Flag to also apply the rules of the .gitignore
+     * files found during the walk.
+     * @throws IllegalArgumentException - If a pattern is invalid.
+     */
+    SubtreeExclusions(Path root, List<String> patterns, boolean readIgnoreFiles) {
+        this.root = root;
+        this.readIgnoreFiles = readIgnoreFiles;
+        this.rootRules = RuleSet.compile(null, root, patterns);
+    }
+
+    /**
+     * Decides whether a directory is excluded, before its entries are
+     * visited. If it is not, the rules of its ignore file are read.
+     *
+     * @param dir - Path of the directory.
+     * @return flag indicating the subtree of the directory is excluded.
+     */
+    boolean excludesDirectory(Path dir) {
+        if (dir.equals(root)) {
+            if (readIgnoreFiles) {
+                directoryRules.put(dir, readIgnoreFile(rootRules, dir));
+            }
+            return false;
+        }
+        RuleSet rules = rulesOf(dir.getParent());
+        if (rules.excludes(dir, true)) {
+            return true;
+        }
+        if (readIgnoreFiles) {
+            directoryRules.put(dir, readIgnoreFile(rules, dir));
+        }
+        return false;
+    }
+
+    /**
+     * Decides whether a file is excluded.
+     *
+     * @param file - Path of the file.
+     * @param directory - Flag indicating the entry is a directory, as for an
+     * entry that could not be accessed.
+     * @return flag indicating the file is excluded.
+     */
+    boolean excludesFile(Path file, boolean directory) {
+        return !file.equals(root) && rulesOf(file.getParent()).excludes(file, directory);
+    }
+
+    /**
+     * Forgets the rules of a directory whose subtree has been walked, so
+     * the rules held do not grow with the size of the tree.
+     *
+     * @param dir - Path of the directory.
+     */
+    void directoryCompleted(Path dir) {
+        if (readIgnoreFiles && !retainDirectoryRules) {
+            directoryRules.remove(dir);
+        }
+    }
+
+    /**
+     * Keeps the rules of every directory after its subtree has been walked,
+     * as entries of a watched walk are visited again when they change. Must
+     * be invoked before the walk starts.
+     */
+    void retainDirectoryRules() {
+        retainDirectoryRules = true;
+    }
+
+    /**
+     * @return the rules applying to the entries of a directory.
+     */
+    private RuleSet rulesOf(Path dir) {
+        if (!readIgnoreFiles || dir == null) {
+            return rootRules;
+        }
+        RuleSet rules = directoryRules.get(dir);
+        // A directory not yet visited, such as the directory of a file that
+        // could not be accessed, only has the rules of the walk.
+        return rules == null ? rootRules : rules;
+    }
+
+    /**
+     * Reads the ignore file of a directory, if it has one.
+     *
+     * @return the rules applying to the entries of the directory.
+     */
+    private static RuleSet readIgnoreFile(RuleSet parent, Path dir) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(dir.resolve(IGNORE_FILE_NAME), StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            // Usually there is no ignore file. One that cannot be read, or
+            // is not text, is also ignored.
+            return parent;
+        }
+        try {
+            return RuleSet.compile(parent, dir, lines);
+        } catch (IllegalArgumentException iae) {
+            // A pattern git accepts that the glob syntax does not.
+            return parent;
+        }
+    }
+
+    /**
+     * The rules found in a directory, linked to the rules of its ancestors.
+     */
+    private static class RuleSet {
+
+        private RuleSet(RuleSet parent, Path base, Rule[] rules) {
+            this.parent = parent;
+            this.base = base;
+            this.rules = rules;
+            boolean anchored = false;
+            for (Rule rule : rules) {
+                anchored |= rule.anchored;
+            }
+            this.anchored = anchored;
+        }
+
+        /**
+         * @return the rules of the lines, or the parent if they hold none.
+         */
+        private static RuleSet compile(RuleSet parent, Path base, List<String> lines) {
+            List<Rule> rules = new ArrayList<Rule>();
+            for (String line : lines) {
+                Rule rule = Rule.parse(line);
+                if (rule != null) {
+                    rules.add(rule);
+                }
+            }
+            if (rules.isEmpty() && parent != null) {
+                return parent;
+            }
+            return new RuleSet(parent, base, rules.toArray(new Rule[rules.size()]));
+        }
+
+        private boolean excludes(Path entry, boolean directory) {
+            Path name = entry.getFileName();
+            if (name == null) {
+                return false;
+            }
+            String nameString = name.toString();
+            for (RuleSet set = this; set != null; set = set.parent) {
+                Path relative = set.anchored ? set.base.relativize(entry) : null;
+                for (int i = set.rules.length - 1; i >= 0; i--) {
+                    Rule rule = set.rules[i];
+                    if (rule.matches(name, nameString, relative, directory)) {
+                        return !rule.negated;
+                    }
+                }
+            }
+            return false;
+        }
+        private final RuleSet parent;
+        private final Path base;
+        private final Rule[] rules;
+        private final boolean anchored;
+    }
+
+    /**
+     * A single pattern.
+     */
+    private static class Rule {
+
+        private Rule(String pattern, boolean negated, boolean directoryOnly, boolean anchored) {
+            this.negated = negated;
+            this.directoryOnly = directoryOnly;
+            this.anchored = anchored;
+            if (!anchored && isLiteral(pattern)) {
+                this.literal = pattern;
+                this.matcher = null;
+            } else {
+                this.literal = null;
+                this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            }
+        }
+
+        /**
+         * Parses a line in the format of a .gitignore file.
+         *
+         * @return the rule, or null for a blank line or a comment.
+         */
+        private static Rule parse(String line) {
+            String pattern = line.trim();
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                return null;
+            }
+            boolean negated = pattern.startsWith("!");
+            if (negated) {
+                pattern = pattern.substring(1);
+            } else if (pattern.startsWith("\\#") || pattern.startsWith("\\!")) {
+                pattern = pattern.substring(1);
+            }
+            boolean directoryOnly = pattern.endsWith("/");
+            while (pattern.endsWith("/")) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            // A leading "**/" matches in any directory. Followed by a name, it
+            // is the same as the name; followed by a path, the path is matched
+            // at any depth below the base directory.
+            boolean anyDirectory = false;
+            while (pattern.startsWith("**/")) {
+                pattern = pattern.substring(3);
+                anyDirectory = true;
+            }
+            boolean anchored = pattern.indexOf('/') >= 0;
+            if (pattern.startsWith("/")) {
+                pattern = pattern.substring(1);
+            }
+            if (pattern.isEmpty()) {
+                return null;
+            }
+            // Braces are not special in .gitignore patterns.
+            pattern = pattern.replace("{", "\\{").replace("}", "\\}");
+            // A "/**/" also matches no directory at all, as in "a/b" for
+            // "a/**/b", which a glob only does as an alternative.
+            pattern = pattern.replace("/**/", "{/,/**/}");
+            if (anyDirectory && anchored) {
+                pattern = "{,**/}" + pattern;
+            }
+            return new Rule(pattern, negated, directoryOnly, anchored);
+        }
+
+        private static boolean isLiteral(String pattern) {
+            for (int i = 0; i < pattern.length(); i++) {
+                if (GLOB_SPECIAL_CHARS.indexOf(pattern.charAt(i)) >= 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean matches(Path name, String nameString, Path relative, boolean directory) {
+            if (directoryOnly && !directory) {
+                return false;
+            } else if (anchored) {
+                return matcher.matches(relative);
+            }
+            return matcher == null ? nameString.equals(literal) : matcher.matches(name);
+        }
+        private final boolean negated;
+        private final boolean directoryOnly;
+        private final boolean anchored;
+        /**
+         * The pattern, if it is a name without glob characters, otherwise
+         * null.
+         */
+        private final String literal;
+        private final PathMatcher matcher;
+    }
+
+    static final String IGNORE_FILE_NAME = ".gitignore";
+    private static final String GLOB_SPECIAL_CHARS = "*?[]{}\\";
+    private final Path root;
+    private final boolean readIgnoreFiles;
+    private final RuleSet rootRules;
+    private final ConcurrentHashMap<Path, RuleSet> directoryRules =
+            new ConcurrentHashMap<Path, RuleSet>();
+    private volatile boolean retainDirectoryRules;
+}
@@ -0,0 +1,493 @@
+package modifiedfilesearch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import modifiedfilesearch.metrics.SearchMetrics;
+import modifiedfilesearch.utils.NamedThreadFactory;
+
+/**
+ * Walks a file tree with a task per directory, for file systems where each
+ * listing and each read of attributes waits on the network. Such a walk
+ * spends its time blocked rather than computing, so instead of the few
+ * threads of ParallelFileWalker it keeps many directories in flight at once,
+ * limited only by a Semaphore of permits for file system calls. Tasks run on
+ * virtual threads when the platform provides them, see newDirectoryExecutor.
+ * <p>
+ * The FileVisitor callbacks are made as by ParallelFileWalker: links are not
+ * followed, preVisitDirectory is invoked before the entries of a directory
+ * are visited, and postVisitDirectory once every entry of the directory, and
+ * all of their descendants, have been visited. A directory does not wait for
+ * its subdirectories; each counts the tasks it is waiting for, and the last
+ * to complete invokes postVisitDirectory, so no thread blocks while another
+ * walks. A directory is listed completely before it is visited, so a permit
+ * is never held while the FileVisitor runs.
+ *
+ * @since 1.7
+ */
+class ThreadPerDirectoryFileWalker {
+
+    /**
+     * @param executor - Executor that runs a task for each directory. It is
+     * not shut down by the walker.
+     * @param ioPermits - Semaphore with a permit for each listing or read of
+     * attributes that may be in flight, which may be shared by several walks.
+     */
+    ThreadPerDirectoryFileWalker(Executor executor, Semaphore ioPermits) {
+        this.executor = executor;
+        this.ioPermits = ioPermits;
+    }
+
+    /**
+     * Creates an ExecutorService that runs each directory task on a new
+     * virtual thread, if the platform provides them. Otherwise, a pool of
+     * FALLBACK_THREADS platform threads is created, whose idle threads are
+     * released after a timeout.
+     *
+     * @return the ExecutorService.
+     */
+    static ExecutorService newDirectoryExecutor() {
+        try {
+            // Thread.ofVirtual().name("directory-", 0).factory()
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, "directory-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory")
+                    .invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor",
+                    ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException roe) {
+            // No virtual threads before Java 21.
+        }
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(FALLBACK_THREADS, FALLBACK_THREADS,
+                IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NamedThreadFactory("directory"));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Sets the SnapshotIndex used by subsequent walks, as for
+     * ParallelFileWalker.
+     *
+     * @param snapshotIndex - SnapshotIndex for the tree being walked, or null
+     * to list every directory.
+     */
+    void setSnapshotIndex(SnapshotIndex snapshotIndex) {
+        this.snapshotIndex = snapshotIndex;
+    }
+
+    /**
+     * Sets the SearchMetrics that subsequent walks record the time taken to
+     * read the attributes of each entry to.
+     *
+     * @param metrics - SearchMetrics to record to, or null.
+     */
+    void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Walks the file tree rooted at the Path specified, invoking the
+     * FileVisitor for each file and directory found. This method blocks until
+     * the walk completes.
+     *
+     * @param start - Path to the root of the tree to be walked.
+     * @param visitor - Thread safe FileVisitor to invoke for each file.
+     * @throws IOException - If the FileVisitor throws an IOException, the
+     * walk is terminated and the first IOException thrown is rethrown here.
+     * If the calling thread is interrupted, the walk is terminated and an
+     * InterruptedIOException is thrown.
+     */
+    void walkFileTree(Path start, FileVisitor<Path> visitor) throws IOException {
+        WalkState state = new WalkState(visitor, snapshotIndex, metrics, executor, ioPermits);
+        BasicFileAttributes attrs;
+        try {
+            attrs = state.readAttributes(start);
+        } catch (IOException ioe) {
+            visitor.visitFileFailed(start, ioe);
+            return;
+        }
+        if (!attrs.isDirectory()) {
+            visitor.visitFile(start, attrs);
+            return;
+        }
+        state.submit(new DirectoryTask(state, start, attrs, null));
+        try {
+            state.walked.await();
+        } catch (InterruptedException ie) {
+            state.terminated = true;
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Walk of " + start + " was interrupted");
+        }
+        Throwable unexpected = state.unexpected.get();
+        if (unexpected instanceof RuntimeException) {
+            throw (RuntimeException) unexpected;
+        } else if (unexpected instanceof Error) {
+            throw (Error) unexpected;
+        } else if (state.failure.get() != null) {
+            throw state.failure.get();
+        }
+    }
+
+    /**
+     * State shared by every task of a single walk.
+     */
+    private static class WalkState {
+
+        private WalkState(FileVisitor<Path> visitor, SnapshotIndex index,
+                SearchMetrics metrics, Executor executor, Semaphore ioPermits) {
+            this.visitor = visitor;
+            this.index = index;
+            this.metrics = metrics;
+            this.executor = executor;
+            this.ioPermits = ioPermits;
+        }
+
+        /**
+         * Submits a directory task. If the executor has been shut down, the
+         * walk is terminated and the task completes without walking.
+         */
+        private void submit(DirectoryTask task) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException ree) {
+                terminated = true;
+                task.taskCompleted();
+            }
+        }
+
+        /**
+         * Reads the attributes of an entry without following links, holding
+         * a permit while doing so and timing the read if the walk has
+         * SearchMetrics.
+         */
+        private BasicFileAttributes readAttributes(Path path) throws IOException {
+            ioPermits.acquireUninterruptibly();
+            long start = metrics == null ? 0 : System.nanoTime();
+            try {
+                return Files.readAttributes(path, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+            } finally {
+                if (metrics != null) {
+                    metrics.statCompleted(System.nanoTime() - start);
+                }
+                ioPermits.release();
+            }
+        }
+
+        /**
+         * Records the first IOException thrown by the FileVisitor, which
+         * terminates the walk.
+         */
+        private void fail(IOException ioe) {
+            failure.compareAndSet(null, ioe);
+            terminated = true;
+        }
+
+        /**
+         * Records the first unchecked exception thrown by a task, which
+         * terminates the walk.
+         */
+        private void fail(Throwable t) {
+            unexpected.compareAndSet(null, t);
+            terminated = true;
+        }
+        private final FileVisitor<Path> visitor;
+        private final SnapshotIndex index;
+        private final SearchMetrics metrics;
+        private final Executor executor;
+        private final Semaphore ioPermits;
+        private final AtomicReference<IOException> failure =
+                new AtomicReference<IOException>();
+        private final AtomicReference<Throwable> unexpected = new AtomicReference<Throwable>();
+        private final CountDownLatch walked = new CountDownLatch(1);
+        private volatile boolean terminated;
+    }
+
+    /**
+     * Walks a single directory. The task counts itself and each subdirectory
+     * it submits as pending; whichever completes last completes the
+     * directory, and then counts it as completed in its parent.
+     */
+    private static class DirectoryTask implements Runnable {
+
+        /**
+         * @param state - State of the walk this task belongs to.
+         * @param dir - Path to the directory.
+         * @param attrs - Attributes of the directory.
+         * @param parent - Task of the parent directory, or null for the root.
+         */
+        private DirectoryTask(WalkState state, Path dir, BasicFileAttributes attrs,
+                DirectoryTask parent) {
+            this.state = state;
+            this.dir = dir;
+            this.attrs = attrs;
+            this.parent = parent;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!state.terminated) {
+                    walk();
+                }
+            } catch (IOException ioe) {
+                state.fail(ioe);
+            } catch (RuntimeException | Error e) {
+                state.fail(e);
+            } finally {
+                taskCompleted();
+            }
+        }
+
+        /**
+         * Lists the directory, or reuses its snapshot if it is unchanged, and
+         * visits its entries. Files are visited on this thread and a task is
+         * submitted for each subdirectory.
+         */
+        private void walk() throws IOException {
+            FileVisitor<Path> visitor = state.visitor;
+            SnapshotIndex index = state.index;
+            if (index != null) {
+                SnapshotIndex.DirectorySnapshot snapshot = index.lookup(dir, attrs);
+                Path[] children = snapshot == null ? null : resolveSnapshot(snapshot);
+                if (children != null) {
+                    walkSnapshot(visitor, snapshot, children);
+                    return;
+                }
+            }
+
+            List<Path> children = new ArrayList<Path>();
+            IOException openException = null;
+            state.ioPermits.acquireUninterruptibly();
+            try {
+                DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+                try {
+                    for (Path child : stream) {
+                        children.add(child);
+                    }
+                } catch (DirectoryIteratorException die) {
+                    iterationException = die.getCause();
+                } finally {
+                    stream.close();
+                }
+            } catch (IOException ioe) {
+                openException = ioe;
+            } finally {
+                state.ioPermits.release();
+            }
+            if (openException != null) {
+                // Same as Files.walkFileTree, a directory that cannot be
+                // opened is reported as a failed file.
+                handle(visitor.visitFileFailed(dir, openException));
+                return;
+            }
+
+            FileVisitResult result = visitor.preVisitDirectory(dir, attrs);
+            if (result != FileVisitResult.CONTINUE) {
+                handle(result);
+                return;
+            }
+            visited = true;
+            List<String> names = null;
+            List<BasicFileAttributes> entryAttrs = null;
+            if (index != null) {
+                names = new ArrayList<String>(children.size());
+                entryAttrs = new ArrayList<BasicFileAttributes>(children.size());
+            }
+            boolean complete = iterationException == null;
+            for (Path child : children) {
+                if (state.terminated) {
+                    return;
+                }
+                BasicFileAttributes childAttrs;
+                try {
+                    childAttrs = state.readAttributes(child);
+                } catch (IOException ioe) {
+                    complete = false;
+                    result = visitor.visitFileFailed(child, ioe);
+                    if (result == FileVisitResult.CONTINUE) {
+                        continue;
+                    }
+                    handle(result);
+                    break;
+                }
+                if (names != null) {
+                    names.add(child.getFileName().toString());
+                    entryAttrs.add(childAttrs);
+                }
+                result = visitChild(visitor, child, childAttrs);
+                if (result != FileVisitResult.CONTINUE) {
+                    complete = false;
+                    handle(result);
+                    break;
+                }
+            }
+            if (complete && index != null) {
+                recordedSnapshot = new SnapshotIndex.DirectorySnapshot(attrs, names, entryAttrs);
+            }
+        }
+
+        /**
+         * Resolves the names recorded for an unchanged directory, as for
+         * ParallelFileWalker.
+         *
+         * @return the Paths of the entries, or null if the directory must be
+         * listed instead.
+         */
+        private Path[] resolveSnapshot(SnapshotIndex.DirectorySnapshot snapshot) {
+            Path[] children = new Path[snapshot.getEntryCount()];
+            try {
+                for (int i = 0; i < children.length; i++) {
+                    children[i] = dir.resolve(snapshot.getName(i));
+                }
+            } catch (InvalidPathException ipe) {
+                return null;
+            }
+            return children;
+        }
+
+        /**
+         * Visits the entries recorded for an unchanged directory. The
+         * attributes recorded for files are reused, but subdirectories are
+         * read again since changes within them do not affect this directory.
+         */
+        private void walkSnapshot(FileVisitor<Path> visitor,
+                SnapshotIndex.DirectorySnapshot snapshot, Path[] children) throws IOException {
+            FileVisitResult result = visitor.preVisitDirectory(dir, attrs);
+            if (result != FileVisitResult.CONTINUE) {
+                handle(result);
+                return;
+            }
+            visited = true;
+            for (int i = 0; i < children.length; i++) {
+                if (state.terminated) {
+                    return;
+                }
+                BasicFileAttributes childAttrs = snapshot.getAttributes(i);
+                if (snapshot.isDirectory(i)) {
+                    try {
+                        childAttrs = state.readAttributes(children[i]);
+                    } catch (IOException ioe) {
+                        result = visitor.visitFileFailed(children[i], ioe);
+                        if (result == FileVisitResult.CONTINUE) {
+                            continue;
+                        }
+                        handle(result);
+                        break;
+                    }
+                }
+                result = visitChild(visitor, children[i], childAttrs);
+                if (result != FileVisitResult.CONTINUE) {
+                    handle(result);
+                    break;
+                }
+            }
+            recordedSnapshot = snapshot;
+        }
+
+        /**
+         * Submits a task for a child directory, or visits a child file.
+         */
+        private FileVisitResult visitChild(FileVisitor<Path> visitor, Path child,
+                BasicFileAttributes childAttrs) throws IOException {
+            if (childAttrs.isDirectory()) {
+                pending.incrementAndGet();
+                state.submit(new DirectoryTask(state, child, childAttrs, this));
+                return FileVisitResult.CONTINUE;
+            }
+            return visitor.visitFile(child, childAttrs);
+        }
+
+        /**
+         * Counts this task, or the task of a subdirectory, as completed. The
+         * last to complete invokes postVisitDirectory, unless the directory
+         * was skipped or the walk terminated, and completes the directory in
+         * its parent. The decrement orders everything the completed tasks
+         * wrote before the completion.
+         */
+        private void taskCompleted() {
+            if (pending.decrementAndGet() > 0) {
+                return;
+            }
+            try {
+                if (visited && !state.terminated) {
+                    handle(state.visitor.postVisitDirectory(dir, iterationException));
+                    if (recordedSnapshot != null) {
+                        state.index.record(dir, recordedSnapshot);
+                    }
+                }
+            } catch (IOException ioe) {
+                state.fail(ioe);
+            } catch (RuntimeException | Error e) {
+                state.fail(e);
+            } finally {
+                if (parent != null) {
+                    parent.taskCompleted();
+                } else {
+                    state.walked.countDown();
+                }
+            }
+        }
+
+        /**
+         * Applies a FileVisitResult other than CONTINUE to the walk. Since
+         * siblings may already be visited concurrently, SKIP_SIBLINGS only
+         * stops the directory currently being iterated.
+         */
+        private void handle(FileVisitResult result) {
+            if (result == FileVisitResult.TERMINATE) {
+                state.terminated = true;
+            }
+        }
+        private final WalkState state;
+        private final Path dir;
+        private final BasicFileAttributes attrs;
+        private final DirectoryTask parent;
+        /**
+         * This task and every subdirectory task it submitted that has not
+         * completed.
+         */
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private boolean visited;
+        private IOException iterationException;
+        private SnapshotIndex.DirectorySnapshot recordedSnapshot;
+    }
+
+    /**
+     * Platform threads used when virtual threads are not available. Enough
+     * to keep a remote file system busy, while few enough to be cheap.
+     */
+    static final int FALLBACK_THREADS = 64;
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+    private final Executor executor;
+    private final Semaphore ioPermits;
+    private SnapshotIndex snapshotIndex;
+    private SearchMetrics metrics;
+}
@@ -0,0 +1,167 @@
+package modifiedfilesearch;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import modifiedfilesearch.data.ContentChange;
+import modifiedfilesearch.data.FileInfo;
+import modifiedfilesearch.data.FileInfoImpl;
+
+/**
+ * Keeps the K most recently modified files offered to it, so a search for
+ * the newest files holds K results rather than every file walked. Files are
+ * kept in a fixed number of bounded min-heaps on the modification time, one
+ * per processor, and each thread offers files to the heap its id selects,
+ * so the threads of a parallel walk rarely contend; the heaps are merged
+ * when a snapshot is taken. The number of heaps does not grow with the
+ * number of threads, as a walk with a virtual thread per directory starts
+ * a thread for every directory.
+ * <p>
+ * Each snapshot also raises a floor shared by every thread: a file older
+ * than the K-th newest file of the snapshot can never be among the newest,
+ * so it is rejected without taking the lock of a heap.
+ *
+ * @since 1.7
+ */
+class TopModifiedFiles {
+
+    /**
+     * @param limit - Number of files kept, K.
+     */
+    TopModifiedFiles(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("The number of files must be positive");
+        }
+        this.limit = limit;
+        this.heaps = new Heap[Runtime.getRuntime().availableProcessors()];
+        for (int i = 0; i < heaps.length; i++) {
+            heaps[i] = new Heap();
+        }
+    }
+
+    /**
+     * @return the number of files kept.
+     */
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Offers a file. A FileInfo is only created if the file is kept.
+     *
+     * @param path - Path of the file.
+     * @param attrs - Attributes of the file.
+     * @param matchingLines - Lines matching a content search, or null.
+     * @param contentChange - Change of the content, or null.
+     */
+    void offer(Path path, BasicFileAttributes attrs, int[] matchingLines,
+            ContentChange contentChange) {
+        long modified = attrs.lastModifiedTime().toMillis();
+        if (modified < floor) {
+            return;
+        }
+        Heap heap = heaps[(int) (Thread.currentThread().getId() % heaps.length)];
+        synchronized (heap) {
+            // A watched file offered again replaces its previous copy, which
+            // would otherwise take the place of another file.
+            FileInfo previous = heap.byPath.remove(path);
+            if (previous != null) {
+                heap.files.remove(previous);
+            }
+            if (heap.files.size() == limit) {
+                if (modified <= modifiedTime(heap.files.peek())) {
+                    return;
+                }
+                heap.byPath.remove(heap.files.poll().getPath());
+            }
+            FileInfo info = new FileInfoImpl(path, attrs, matchingLines, contentChange);
+            heap.files.add(info);
+            heap.byPath.put(path, info);
+            heap.version++;
+        }
+    }
+
+    /**
+     * Merges the heaps into the K newest files. Heaps may
+     * still be changing, so a snapshot taken during a walk is a preview;
+     * a snapshot taken once the walk has ended is exact. A path offered more
+     * than once from different threads, as happens when a watched file
+     * changes, may be kept by more than one heap, and appears once.
+     *
+     * @return the newest files, newest first.
+     */
+    List<FileInfo> snapshot() {
+        List<FileInfo> merged = new ArrayList<FileInfo>();
+        for (Heap heap : heaps) {
+            synchronized (heap) {
+                merged.addAll(heap.files);
+            }
+        }
+        Collections.sort(merged, Collections.reverseOrder(BY_MODIFIED_TIME));
+        List<FileInfo> newest = new ArrayList<FileInfo>(Math.min(limit, merged.size()));
+        Set<Path> paths = new HashSet<Path>();
+        for (FileInfo info : merged) {
+            if (newest.size() == limit) {
+                break;
+            }
+            if (paths.add(info.getPath())) {
+                newest.add(info);
+            }
+        }
+        if (newest.size() == limit) {
+            long kth = modifiedTime(newest.get(limit - 1));
+            if (kth > floor) {
+                floor = kth;
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * @return a number that changes whenever a file is kept, so a caller
+     * can tell whether a new snapshot would differ from the last.
+     */
+    long getVersion() {
+        long version = 0;
+        for (Heap heap : heaps) {
+            synchronized (heap) {
+                version += heap.version;
+            }
+        }
+        return version;
+    }
+
+    private static long modifiedTime(FileInfo info) {
+        return info.getBasicFileAttributes().lastModifiedTime().toMillis();
+    }
+
+    /**
+     * A heap of the files offered, ordered with the oldest file at its head,
+     * and the file kept for each path.
+     */
+    private static class Heap {
+
+        private final PriorityQueue<FileInfo> files =
+                new PriorityQueue<FileInfo>(16, BY_MODIFIED_TIME);
+        private final Map<Path, FileInfo> byPath = new HashMap<Path, FileInfo>();
+        private long version;
+    }
+
+    private static final Comparator<FileInfo> BY_MODIFIED_TIME = new Comparator<FileInfo>() {
+        @Override
+        public int compare(FileInfo o1, FileInfo o2) {
+            return Long.compare(modifiedTime(o1), modifiedTime(o2));
+        }
+    };
+    private final int limit;
+    private final Heap[] heaps;
+    private volatile long floor = Long.MIN_VALUE;
+}
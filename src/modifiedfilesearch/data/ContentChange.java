@@ -0,0 +1,39 @@
+package modifiedfilesearch.data;
+
+/**
+ * How the content of a file compares with the content recorded by the
+ * previous search that hashed it.
+ *
+ */
+public enum ContentChange {
+
+    /**
+     * The file was not hashed by the previous search.
+     */
+    NEW("new"),
+    /**
+     * The size and modification time are those recorded. The file is only
+     * read again if its modification time was too recent to trust.
+     */
+    UNCHANGED("unchanged"),
+    /**
+     * The modification time changed, but the content did not.
+     */
+    TOUCHED("touched only"),
+    /**
+     * The content changed.
+     */
+    CHANGED("content changed");
+
+    private ContentChange(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return the label describing the change.
+     */
+    public String getLabel() {
+        return label;
+    }
+    private final String label;
+}
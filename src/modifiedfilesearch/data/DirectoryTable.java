@@ -0,0 +1,68 @@
+package modifiedfilesearch.data;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A table of the directories that hold search results, so that a result can
+ * be stored as the id of its directory and its file name rather than as a
+ * full path. Each directory's Path is held once, however many results it
+ * holds.
+ * <p>
+ * The table is not synchronized. Directories must be added under the lock
+ * of the owning ResultStore, and an id may be read by any thread that has
+ * seen a result referring to it.
+ *
+ */
+public class DirectoryTable {
+
+    /**
+     * Creates an empty table.
+     */
+    public DirectoryTable() {
+        directories = new Path[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Provides the id of a directory, adding it to the table if necessary.
+     *
+     * @param dir - Path of the directory.
+     * @return the id of the directory.
+     */
+    int intern(Path dir) {
+        Integer id = ids.get(dir);
+        if (id != null) {
+            return id;
+        }
+        int newId = count;
+        if (newId == directories.length) {
+            Path[] grown = new Path[directories.length * 2];
+            System.arraycopy(directories, 0, grown, 0, directories.length);
+            directories = grown;
+        }
+        directories[newId] = dir;
+        ids.put(dir, newId);
+        count = newId + 1;
+        return newId;
+    }
+
+    /**
+     * @param id - Id of a directory.
+     * @return the Path of the directory.
+     */
+    public Path getPath(int id) {
+        return directories[id];
+    }
+
+    /**
+     * @return the number of directories in the table.
+     */
+    public int size() {
+        return count;
+    }
+    private static final int INITIAL_CAPACITY = 1024;
+    private final Map<Path, Integer> ids = new HashMap<Path, Integer>();
+    private volatile Path[] directories;
+    private volatile int count;
+}
@@ -19,4 +19,18 @@ public interface FileInfo {
      * @return 
      */   
     public BasicFileAttributes getBasicFileAttributes();
+
+    /**
+     * Provides the lines of the file that matched a content search.
+     * @return the line numbers, starting at 1, or null if the content of the
+     * file was not searched.
+     */
+    public int[] getMatchingLines();
+
+    /**
+     * Provides how the content of the file compares with the previous search.
+     * @return the ContentChange, or null if the content of the file was not
+     * hashed.
+     */
+    public ContentChange getContentChange();
 }
@@ -0,0 +1,74 @@
+package modifiedfilesearch.data;
+
+import java.awt.Color;
+
+/**
+ * A DisplayString for the path of a FileInfo, followed by the lines that
+ * matched if its content was searched, and by how its content changed if it
+ * was hashed. The String is not created until it
+ * is first displayed, so a FileInfo backed by a ResultStore only creates its
+ * full path if it is drawn.
+ *
+ */
+public class FileInfoDisplayString implements DisplayString {
+
+    /**
+     * Constructs the FileInfoDisplayString
+     *
+     * @param prefix - Text displayed before the path, may be empty.
+     * @param info - FileInfo whose path is displayed.
+     * @param color - Color to display the String
+     */
+    public FileInfoDisplayString(String prefix, FileInfo info, Color color) {
+        this.prefix = prefix;
+        this.info = info;
+        this.color = color;
+    }
+
+    @Override
+    public String getString() {
+        // Racing threads may each create the String, but it is immutable.
+        String s = str;
+        if (s == null) {
+            s = prefix + info.getPath().toString() + linesSuffix(info.getMatchingLines());
+            ContentChange change = info.getContentChange();
+            if (change != null) {
+                s = s + " (" + change.getLabel() + ")";
+            }
+            str = s;
+        }
+        return s;
+    }
+
+    /**
+     * @return the matching lines as " : lines 3, 14", with at most
+     * MAX_LINES_DISPLAYED lines, or an empty String if there are none.
+     */
+    private static String linesSuffix(int[] lines) {
+        if (lines == null || lines.length == 0) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(lines.length == 1 ? " : line " : " : lines ");
+        int shown = Math.min(lines.length, MAX_LINES_DISPLAYED);
+        for (int i = 0; i < shown; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(lines[i]);
+        }
+        if (shown < lines.length) {
+            builder.append(", ...");
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public Color getColor() {
+        return color;
+    }
+    private static final int MAX_LINES_DISPLAYED = 10;
+    private final String prefix;
+    private final FileInfo info;
+    private final Color color;
+    private String str;
+}
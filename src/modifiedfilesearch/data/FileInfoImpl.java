@@ -16,8 +16,34 @@ public class FileInfoImpl implements FileInfo {
      * @param attr - Associated BasicFileAttributes
      */
     public FileInfoImpl(Path filePath, BasicFileAttributes attr) {
+        this(filePath, attr, null);
+    }
+
+    /**
+     * Constructs an implementation of the FileInfo interface for a file whose
+     * content was searched.
+     * @param filePath - Specified Path
+     * @param attr - Associated BasicFileAttributes
+     * @param matchingLines - Lines matching the content search, or null
+     */
+    public FileInfoImpl(Path filePath, BasicFileAttributes attr, int[] matchingLines) {
+        this(filePath, attr, matchingLines, null);
+    }
+
+    /**
+     * Constructs an implementation of the FileInfo interface for a file whose
+     * content was searched or hashed.
+     * @param filePath - Specified Path
+     * @param attr - Associated BasicFileAttributes
+     * @param matchingLines - Lines matching the content search, or null
+     * @param contentChange - Change since the previous search, or null
+     */
+    public FileInfoImpl(Path filePath, BasicFileAttributes attr, int[] matchingLines,
+            ContentChange contentChange) {
         this.filePath = filePath;
         this.attr = attr;
+        this.matchingLines = matchingLines;
+        this.contentChange = contentChange;
     }
 
     @Override
@@ -29,6 +55,18 @@ public class FileInfoImpl implements FileInfo {
     public BasicFileAttributes getBasicFileAttributes() {
         return attr;
     }
+
+    @Override
+    public int[] getMatchingLines() {
+        return matchingLines;
+    }
+
+    @Override
+    public ContentChange getContentChange() {
+        return contentChange;
+    }
     private final BasicFileAttributes attr;
     private final Path filePath;
+    private final int[] matchingLines;
+    private final ContentChange contentChange;
 }
\ No newline at end of file
@@ -0,0 +1,404 @@
+package modifiedfilesearch.data;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A compact, append only store of search results. Rather than an object
+ * per result holding a Path and a BasicFileAttributes, the store keeps
+ * parallel primitive arrays of the modification time, creation time and
+ * size, a byte of flags, and the directory id and file name of each result.
+ * The directories are held once in a shared DirectoryTable, and the full
+ * Path of a result is only created when it is requested. The arrays are
+ * allocated in fixed size chunks, so the store never copies results as it
+ * grows.
+ * <p>
+ * Results are identified by the index returned by append. Appending is
+ * thread safe; an index may be read by any thread once append has returned
+ * it, or once size() exceeds it.
+ *
+ */
+public class ResultStore {
+
+    /**
+     * Creates an empty store.
+     */
+    public ResultStore() {
+        chunks = new Chunk[INITIAL_CHUNKS];
+    }
+
+    /**
+     * Appends a result.
+     *
+     * @param path - Path of the file or directory.
+     * @param attrs - Attributes of the file or directory, or null if it could
+     * not be accessed.
+     * @return the index of the result.
+     */
+    public int append(Path path, BasicFileAttributes attrs) {
+        return append(path, attrs, null);
+    }
+
+    /**
+     * Appends a result whose content was searched.
+     *
+     * @param path - Path of the file or directory.
+     * @param attrs - Attributes of the file or directory, or null if it could
+     * not be accessed.
+     * @param matchingLines - Lines matching the content search, or null if
+     * the content was not searched.
+     * @return the index of the result.
+     */
+    public int append(Path path, BasicFileAttributes attrs, int[] matchingLines) {
+        return append(path, attrs, matchingLines, null);
+    }
+
+    /**
+     * Appends a result whose content may have been searched or hashed.
+     *
+     * @param path - Path of the file or directory.
+     * @param attrs - Attributes of the file or directory, or null if it could
+     * not be accessed.
+     * @param matchingLines - Lines matching the content search, or null if
+     * the content was not searched.
+     * @param contentChange - How the content compares with the previous
+     * search, or null if the content was not hashed.
+     * @return the index of the result.
+     */
+    public synchronized int append(Path path, BasicFileAttributes attrs, int[] matchingLines,
+            ContentChange contentChange) {
+        int index = size;
+        int chunkIndex = index >>> CHUNK_BITS;
+        if (chunkIndex == chunks.length) {
+            Chunk[] grown = new Chunk[chunks.length * 2];
+            System.arraycopy(chunks, 0, grown, 0, chunks.length);
+            chunks = grown;
+        }
+        Chunk chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            chunk = new Chunk();
+            chunks[chunkIndex] = chunk;
+        }
+        int offset = index & CHUNK_MASK;
+        storeName(chunk, offset, path);
+        if (matchingLines != null) {
+            // Content searches are rare, so the column is only allocated
+            // for chunks that need it.
+            if (chunk.matchingLines == null) {
+                chunk.matchingLines = new int[CHUNK_SIZE][];
+            }
+            chunk.matchingLines[offset] = matchingLines;
+        }
+        if (attrs == null) {
+            chunk.flags[offset] = TYPE_DENIED;
+        } else {
+            chunk.modifiedTimes[offset] = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            chunk.creationTimes[offset] = attrs.creationTime().to(TimeUnit.NANOSECONDS);
+            chunk.sizes[offset] = attrs.size();
+            int type = attrs.isDirectory() ? TYPE_DIRECTORY
+                    : attrs.isRegularFile() ? TYPE_REGULAR
+                    : attrs.isSymbolicLink() ? TYPE_LINK : TYPE_OTHER;
+            int change = contentChange == null ? 0 : contentChange.ordinal() + 1;
+            chunk.flags[offset] = (byte) (type | change << CHANGE_SHIFT);
+        }
+        // The volatile write publishes the result to readers of size().
+        size = index + 1;
+        return index;
+    }
+
+    /**
+     * Splits a Path into the id of its directory and its file name. Results
+     * tend to arrive grouped by directory, so the directory of the previous
+     * result is compared with the string of the Path before the directory
+     * is looked up in the table.
+     */
+    private void storeName(Chunk chunk, int offset, Path path) {
+        String str = path.toString();
+        String separator = path.getFileSystem().getSeparator();
+        if (lastDirectory != null && str.length() > lastPrefixLength
+                && str.startsWith(lastDirectory)
+                && str.startsWith(separator, lastPrefixLength - separator.length())
+                && str.indexOf(separator, lastPrefixLength) < 0) {
+            chunk.directoryIds[offset] = lastDirectoryId;
+            chunk.names[offset] = str.substring(lastPrefixLength);
+            return;
+        }
+        Path parent = path.getParent();
+        if (parent == null) {
+            chunk.directoryIds[offset] = NO_DIRECTORY;
+            chunk.names[offset] = str;
+            return;
+        }
+        lastDirectory = parent.toString();
+        lastDirectoryId = directoryTable.intern(parent);
+        lastPrefixLength = lastDirectory.endsWith(separator)
+                ? lastDirectory.length() : lastDirectory.length() + separator.length();
+        chunk.directoryIds[offset] = lastDirectoryId;
+        chunk.names[offset] = str.substring(lastPrefixLength);
+    }
+
+    /**
+     * @return the table of the directories holding the stored results.
+     */
+    public DirectoryTable getDirectoryTable() {
+        return directoryTable;
+    }
+
+    /**
+     * @return the number of results stored.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Provides a FileInfo view of a result. The view holds no copy of the
+     * result, only the store and the index.
+     *
+     * @param index - Index of the result.
+     * @return a FileInfo for the result.
+     */
+    public FileInfo get(int index) {
+        return new StoredFileInfo(this, index);
+    }
+
+    /**
+     * Creates the Path of a result from its directory and file name.
+     *
+     * @param index - Index of the result.
+     * @return the Path of the result.
+     */
+    public Path getPath(int index) {
+        Chunk chunk = chunk(index);
+        int offset = index & CHUNK_MASK;
+        int directoryId = chunk.directoryIds[offset];
+        if (directoryId == NO_DIRECTORY) {
+            return FileSystems.getDefault().getPath(chunk.names[offset]);
+        }
+        return directoryTable.getPath(directoryId).resolve(chunk.names[offset]);
+    }
+
+    /**
+     * @param index - Index of the result.
+     * @return the id of the directory holding the result in the
+     * DirectoryTable, or -1 if the result is a root.
+     */
+    public int getDirectoryId(int index) {
+        return chunk(index).directoryIds[index & CHUNK_MASK];
+    }
+
+    /**
+     * @param index - Index of the result.
+     * @return the file name of the result.
+     */
+    public String getName(int index) {
+        return chunk(index).names[index & CHUNK_MASK];
+    }
+
+    /**
+     * @param index - Index of the result.
+     * @return the lines matching the content search, or null if the content
+     * was not searched.
+     */
+    public int[] getMatchingLines(int index) {
+        int[][] lines = chunk(index).matchingLines;
+        return lines == null ? null : lines[index & CHUNK_MASK];
+    }
+
+    /**
+     * @param index - Index of the result.
+     * @return how the content compares with the previous search, or null if
+     * the content was not hashed.
+     */
+    public ContentChange getContentChange(int index) {
+        int change = (chunk(index).flags[index & CHUNK_MASK] & CHANGE_MASK) >>> CHANGE_SHIFT;
+        return change == 0 ? null : CONTENT_CHANGES[change - 1];
+    }
+
+    /**
+     * @param index - Index of the result.
+     * @return the last modified time in milliseconds since the epoch.
+     */
+    public long getLastModifiedMillis(int index) {
+        return TimeUnit.NANOSECONDS.toMillis(chunk(index).modifiedTimes[index & CHUNK_MASK]);
+    }
+
+    /**
+     * @param index - Index of the result.
+     * @return the creation time in milliseconds since the epoch.
+     */
+    public long getCreationMillis(int index) {
+        return TimeUnit.NANOSECONDS.toMillis(chunk(index).creationTimes[index & CHUNK_MASK]);
+    }
+
+    /**
+     * @param index - Index of the result.
+     * @return the size in bytes.
+     */
+    public long getSize(int index) {
+        return chunk(index).sizes[index & CHUNK_MASK];
+    }
+
+    /**
+     * @param index - Index of the result.
+     * @return flag indicating the result is a directory.
+     */
+    public boolean isDirectory(int index) {
+        return type(index) == TYPE_DIRECTORY;
+    }
+
+    /**
+     * @param index - Index of the result.
+     * @return flag indicating the result could not be accessed.
+     */
+    public boolean isDenied(int index) {
+        return type(index) == TYPE_DENIED;
+    }
+
+    private int type(int index) {
+        return chunk(index).flags[index & CHUNK_MASK] & TYPE_MASK;
+    }
+
+    private Chunk chunk(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        return chunks[index >>> CHUNK_BITS];
+    }
+
+    /**
+     * A fixed size block of results.
+     */
+    private static class Chunk {
+
+        private final long[] modifiedTimes = new long[CHUNK_SIZE];
+        private final long[] creationTimes = new long[CHUNK_SIZE];
+        private final long[] sizes = new long[CHUNK_SIZE];
+        private final byte[] flags = new byte[CHUNK_SIZE];
+        private final int[] directoryIds = new int[CHUNK_SIZE];
+        private final String[] names = new String[CHUNK_SIZE];
+        private int[][] matchingLines;
+    }
+
+    /**
+     * A FileInfo view of a single result.
+     */
+    private static class StoredFileInfo implements FileInfo {
+
+        private StoredFileInfo(ResultStore store, int index) {
+            this.store = store;
+            this.index = index;
+        }
+
+        @Override
+        public Path getPath() {
+            return store.getPath(index);
+        }
+
+        @Override
+        public BasicFileAttributes getBasicFileAttributes() {
+            if (store.isDenied(index)) {
+                return null;
+            }
+            return new StoredAttributes(store, index);
+        }
+
+        @Override
+        public int[] getMatchingLines() {
+            return store.getMatchingLines(index);
+        }
+
+        @Override
+        public ContentChange getContentChange() {
+            return store.getContentChange(index);
+        }
+        private final ResultStore store;
+        private final int index;
+    }
+
+    /**
+     * BasicFileAttributes view of a single result. The last access time is
+     * not stored and is reported as the last modified time.
+     */
+    private static class StoredAttributes implements BasicFileAttributes {
+
+        private StoredAttributes(ResultStore store, int index) {
+            this.chunk = store.chunk(index);
+            this.offset = index & CHUNK_MASK;
+        }
+
+        @Override
+        public FileTime lastModifiedTime() {
+            return FileTime.from(chunk.modifiedTimes[offset], TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public FileTime lastAccessTime() {
+            return lastModifiedTime();
+        }
+
+        @Override
+        public FileTime creationTime() {
+            return FileTime.from(chunk.creationTimes[offset], TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public boolean isRegularFile() {
+            return (chunk.flags[offset] & TYPE_MASK) == TYPE_REGULAR;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return (chunk.flags[offset] & TYPE_MASK) == TYPE_DIRECTORY;
+        }
+
+        @Override
+        public boolean isSymbolicLink() {
+            return (chunk.flags[offset] & TYPE_MASK) == TYPE_LINK;
+        }
+
+        @Override
+        public boolean isOther() {
+            return (chunk.flags[offset] & TYPE_MASK) == TYPE_OTHER;
+        }
+
+        @Override
+        public long size() {
+            return chunk.sizes[offset];
+        }
+
+        @Override
+        public Object fileKey() {
+            return null;
+        }
+        private final Chunk chunk;
+        private final int offset;
+    }
+
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CHUNKS = 16;
+    // The low bits of the flags of a result hold its type.
+    private static final int TYPE_MASK = 0x07;
+    private static final byte TYPE_REGULAR = 1;
+    private static final byte TYPE_DIRECTORY = 2;
+    private static final byte TYPE_LINK = 3;
+    private static final byte TYPE_OTHER = 4;
+    private static final byte TYPE_DENIED = 5;
+    // The next bits hold the ContentChange, plus one, or 0 if not hashed.
+    private static final int CHANGE_SHIFT = 3;
+    private static final int CHANGE_MASK = 0x38;
+    private static final ContentChange[] CONTENT_CHANGES = ContentChange.values();
+    private static final int NO_DIRECTORY = -1;
+    private final DirectoryTable directoryTable = new DirectoryTable();
+    private volatile Chunk[] chunks;
+    // The directory of the last result appended, guarded by this.
+    private String lastDirectory;
+    private int lastDirectoryId;
+    private int lastPrefixLength;
+    private volatile int size;
+}
@@ -0,0 +1,89 @@
+package modifiedfilesearch.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread safe histogram of latencies, with a bucket for each power of two
+ * nanoseconds. Recording is a few atomic increments, so it may be used on
+ * every file of a walk. Percentiles are reported as the upper bound of the
+ * bucket they fall in, so they are accurate to within a factor of two.
+ *
+ */
+public class LatencyHistogram {
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos - Latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(nanos));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+    }
+
+    /**
+     * @return the number of latencies recorded.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the mean latency in nanoseconds, or 0 if none were recorded.
+     */
+    public long getMeanNanos() {
+        long n = count.get();
+        return n == 0 ? 0 : totalNanos.get() / n;
+    }
+
+    /**
+     * Provides the latency below which the percentage of latencies specified
+     * fall.
+     *
+     * @param percentile - Percentage, from 0 to 100.
+     * @return the upper bound of the bucket holding the percentile in
+     * nanoseconds, or 0 if none were recorded.
+     */
+    public long getPercentileNanos(double percentile) {
+        long n = 0;
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(n * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                // Bucket 63 ends at Long.MAX_VALUE.
+                return i == 0 ? 0 : (1L << i) - 1;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Discards every latency recorded.
+     */
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+    }
+    // Bucket i holds latencies with i significant bits, below 2^i nanoseconds.
+    private static final int BUCKET_COUNT = Long.SIZE;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+}
@@ -0,0 +1,262 @@
+package modifiedfilesearch.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters, gauges and latency histograms for every stage of a search, from
+ * the walk through the delivery of results to the display. The metrics may
+ * be registered with the platform MBeanServer, so they can be watched with
+ * JConsole or any other JMX client while a search runs.
+ * <p>
+ * Every method is thread safe. Stages that are not running simply leave
+ * their metrics unchanged.
+ *
+ */
+public class SearchMetrics implements SearchMetricsMXBean {
+
+    /**
+     * Registers the metrics with the platform MBeanServer. A failure to
+     * register is reported to standard error, since the search works
+     * without it.
+     *
+     * @param name - Name distinguishing these metrics from others in the
+     * same JVM, such as "gui" or "headless".
+     */
+    public void register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (JMException jme) {
+            System.err.println("Could not register search metrics: " + jme.getMessage());
+        }
+    }
+
+    /**
+     * Unregisters the metrics, if they were registered.
+     */
+    public void unregister() {
+        ObjectName registered = objectName;
+        if (registered == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+        } catch (JMException jme) {
+            // Already unregistered.
+        }
+        objectName = null;
+    }
+
+    /**
+     * Sets the queue of DisplayStrings waiting to be displayed, whose size
+     * is reported as the display backlog.
+     *
+     * @param displayQueue - Queue of DisplayStrings, or null.
+     */
+    public void setDisplayQueue(Queue<?> displayQueue) {
+        this.displayQueue = displayQueue;
+    }
+
+    /**
+     * Adds the result queue of a running search, whose size is included in
+     * the result queue depth.
+     *
+     * @param resultQueue - Queue of results of the search.
+     */
+    public void addResultQueue(Queue<?> resultQueue) {
+        resultQueues.add(resultQueue);
+    }
+
+    /**
+     * Removes the result queue of a search that has ended.
+     *
+     * @param resultQueue - Queue of results of the search.
+     */
+    public void removeResultQueue(Queue<?> resultQueue) {
+        resultQueues.remove(resultQueue);
+    }
+
+    /**
+     * Counts an entry visited by a walk.
+     */
+    public void entryVisited() {
+        entriesVisited.incrementAndGet();
+    }
+
+    /**
+     * Counts a file matching the file types searched for.
+     */
+    public void fileMatched() {
+        filesMatched.incrementAndGet();
+    }
+
+    /**
+     * Counts a file whose content was read and hashed.
+     */
+    public void fileHashed() {
+        filesHashed.incrementAndGet();
+    }
+
+    /**
+     * Counts a result added to the queue of a search.
+     *
+     * @param waitNanos - Time spent waiting for space in the queue.
+     */
+    public void resultQueued(long waitNanos) {
+        resultsQueued.incrementAndGet();
+        queueWait.record(waitNanos);
+    }
+
+    /**
+     * Counts a batch of results delivered to the listener of a search.
+     *
+     * @param count - Number of results in the batch.
+     * @param deliveryNanos - Time the listener took to handle the batch.
+     */
+    public void resultsDelivered(int count, long deliveryNanos) {
+        resultsDelivered.addAndGet(count);
+        delivery.record(deliveryNanos);
+    }
+
+    /**
+     * Records the time taken to read the attributes of an entry.
+     *
+     * @param nanos - Time taken in nanoseconds.
+     */
+    public void statCompleted(long nanos) {
+        statLatency.record(nanos);
+    }
+
+    /**
+     * Counts DisplayStrings moved to the screen and skipped.
+     *
+     * @param displayedCount - Number moved to the screen.
+     * @param skippedCount - Number skipped without being displayed.
+     */
+    public void displayDrained(int displayedCount, int skippedCount) {
+        displayed.addAndGet(displayedCount);
+        displaySkipped.addAndGet(skippedCount);
+    }
+
+    /**
+     * Records the time taken to paint the search status.
+     *
+     * @param nanos - Time taken in nanoseconds.
+     */
+    public void paintCompleted(long nanos) {
+        paint.record(nanos);
+    }
+
+    @Override
+    public long getEntriesVisited() {
+        return entriesVisited.get();
+    }
+
+    @Override
+    public long getFilesMatched() {
+        return filesMatched.get();
+    }
+
+    @Override
+    public long getFilesHashed() {
+        return filesHashed.get();
+    }
+
+    @Override
+    public long getResultsQueued() {
+        return resultsQueued.get();
+    }
+
+    @Override
+    public long getResultsDelivered() {
+        return resultsDelivered.get();
+    }
+
+    @Override
+    public long getResultQueueDepth() {
+        long depth = 0;
+        for (Queue<?> queue : resultQueues) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    @Override
+    public long getDisplayBacklog() {
+        Queue<?> queue = displayQueue;
+        return queue == null ? 0 : queue.size();
+    }
+
+    @Override
+    public long getDisplayed() {
+        return displayed.get();
+    }
+
+    @Override
+    public long getDisplaySkipped() {
+        return displaySkipped.get();
+    }
+
+    @Override
+    public long getStatLatencyMedianMicros() {
+        return toMicros(statLatency.getPercentileNanos(50));
+    }
+
+    @Override
+    public long getStatLatency99thMicros() {
+        return toMicros(statLatency.getPercentileNanos(99));
+    }
+
+    @Override
+    public long getQueueWait99thMicros() {
+        return toMicros(queueWait.getPercentileNanos(99));
+    }
+
+    @Override
+    public long getDelivery99thMicros() {
+        return toMicros(delivery.getPercentileNanos(99));
+    }
+
+    @Override
+    public long getPaint99thMicros() {
+        return toMicros(paint.getPercentileNanos(99));
+    }
+
+    @Override
+    public void resetLatencies() {
+        statLatency.reset();
+        queueWait.reset();
+        delivery.reset();
+        paint.reset();
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static final String OBJECT_NAME_PREFIX = "modifiedfilesearch:type=SearchMetrics,name=";
+    private final AtomicLong entriesVisited = new AtomicLong();
+    private final AtomicLong filesMatched = new AtomicLong();
+    private final AtomicLong filesHashed = new AtomicLong();
+    private final AtomicLong resultsQueued = new AtomicLong();
+    private final AtomicLong resultsDelivered = new AtomicLong();
+    private final AtomicLong displayed = new AtomicLong();
+    private final AtomicLong displaySkipped = new AtomicLong();
+    private final LatencyHistogram statLatency = new LatencyHistogram();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram delivery = new LatencyHistogram();
+    private final LatencyHistogram paint = new LatencyHistogram();
+    private final Set<Queue<?>> resultQueues = new CopyOnWriteArraySet<Queue<?>>();
+    private volatile Queue<?> displayQueue;
+    private volatile ObjectName objectName;
+}
@@ -0,0 +1,84 @@
+package modifiedfilesearch.metrics;
+
+/**
+ * The management interface of SearchMetrics. Counts are totals since the
+ * metrics were created; latencies are in microseconds.
+ *
+ */
+public interface SearchMetricsMXBean {
+
+    /**
+     * @return the number of files and directories visited by walks.
+     */
+    long getEntriesVisited();
+
+    /**
+     * @return the number of files matching the file types searched for.
+     */
+    long getFilesMatched();
+
+    /**
+     * @return the number of files whose content was read and hashed.
+     */
+    long getFilesHashed();
+
+    /**
+     * @return the number of results added to the queues of searches.
+     */
+    long getResultsQueued();
+
+    /**
+     * @return the number of results delivered to the listeners of searches.
+     */
+    long getResultsDelivered();
+
+    /**
+     * @return the number of results waiting in the queues of searches.
+     */
+    long getResultQueueDepth();
+
+    /**
+     * @return the number of DisplayStrings waiting to be displayed.
+     */
+    long getDisplayBacklog();
+
+    /**
+     * @return the number of DisplayStrings moved to the screen.
+     */
+    long getDisplayed();
+
+    /**
+     * @return the number of DisplayStrings skipped to catch up with a search.
+     */
+    long getDisplaySkipped();
+
+    /**
+     * @return the median time to read the attributes of an entry.
+     */
+    long getStatLatencyMedianMicros();
+
+    /**
+     * @return the 99th percentile time to read the attributes of an entry.
+     */
+    long getStatLatency99thMicros();
+
+    /**
+     * @return the 99th percentile time a walk waited to queue a result.
+     */
+    long getQueueWait99thMicros();
+
+    /**
+     * @return the 99th percentile time to deliver a batch of results.
+     */
+    long getDelivery99thMicros();
+
+    /**
+     * @return the 99th percentile time to paint the search status.
+     */
+    long getPaint99thMicros();
+
+    /**
+     * Discards the latencies recorded. Counts are not reset.
+     */
+    void resetLatencies();
+}
@@ -0,0 +1,111 @@
+package modifiedfilesearch.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import modifiedfilesearch.data.ContentChange;
+import modifiedfilesearch.data.FileInfo;
+
+/**
+ * Exports results in a compact binary format that BinaryResultReader loads
+ * without parsing text. The file starts with the int MAGIC and the int
+ * VERSION, followed by one record per result, all big endian:
+ * <pre>
+ *   int     length of the rest of the record
+ *   byte    type: TYPE_REGULAR, TYPE_DIRECTORY, TYPE_LINK, TYPE_OTHER or
+ *           TYPE_DENIED
+ *   byte    flags: FLAG_MODIFIED, FLAG_LINES, FLAG_CONTENT_CHANGE
+ *   long    size                      }
+ *   long    last modified, nanoseconds } omitted for TYPE_DENIED
+ *   long    creation, nanoseconds     }
+ *   int     length of the path, followed by the path in UTF-8
+ *   int     number of lines, followed by the lines, if FLAG_LINES
+ *   byte    ContentChange ordinal, if FLAG_CONTENT_CHANGE
+ * </pre>
+ * The length prefix lets a reader skip records, and lets later versions add
+ * fields to the end of a record.
+ *
+ */
+class BinaryResultExporter extends ResultExporter {
+
+    /**
+     * @param channel - Channel the results are written to.
+     */
+    BinaryResultExporter(WritableByteChannel channel) {
+        super(channel);
+    }
+
+    @Override
+    void writeHeader() throws IOException {
+        buffer.putInt(MAGIC).putInt(VERSION);
+    }
+
+    @Override
+    void write(FileInfo info, boolean modified) throws IOException {
+        BasicFileAttributes attrs = info.getBasicFileAttributes();
+        byte[] path = info.getPath().toString().getBytes(StandardCharsets.UTF_8);
+        int[] lines = info.getMatchingLines();
+        ContentChange change = info.getContentChange();
+        int flags = (modified ? FLAG_MODIFIED : 0)
+                | (lines != null ? FLAG_LINES : 0)
+                | (change != null ? FLAG_CONTENT_CHANGE : 0);
+
+        int length = 2 + (attrs != null ? 24 : 0) + 4 + path.length
+                + (lines != null ? 4 + 4 * lines.length : 0)
+                + (change != null ? 1 : 0);
+        ByteBuffer out = buffer;
+        if (4 + length > BUFFER_SIZE) {
+            // Larger than the buffer, so written on its own.
+            drain();
+            out = ByteBuffer.allocate(4 + length);
+        } else {
+            ensureRemaining(4 + length);
+        }
+        out.putInt(length);
+        out.put(typeOf(attrs));
+        out.put((byte) flags);
+        if (attrs != null) {
+            out.putLong(attrs.size());
+            out.putLong(attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+            out.putLong(attrs.creationTime().to(TimeUnit.NANOSECONDS));
+        }
+        out.putInt(path.length);
+        out.put(path);
+        if (lines != null) {
+            out.putInt(lines.length);
+            for (int line : lines) {
+                out.putInt(line);
+            }
+        }
+        if (change != null) {
+            out.put((byte) change.ordinal());
+        }
+        if (out != buffer) {
+            out.flip();
+            writeFully(out);
+        }
+    }
+
+    private static byte typeOf(BasicFileAttributes attrs) {
+        if (attrs == null) {
+            return TYPE_DENIED;
+        }
+        return attrs.isDirectory() ? TYPE_DIRECTORY
+                : attrs.isRegularFile() ? TYPE_REGULAR
+                : attrs.isSymbolicLink() ? TYPE_LINK : TYPE_OTHER;
+    }
+
+    static final int MAGIC = 0x4d465352;
+    static final int VERSION = 1;
+    static final byte TYPE_REGULAR = 1;
+    static final byte TYPE_DIRECTORY = 2;
+    static final byte TYPE_LINK = 3;
+    static final byte TYPE_OTHER = 4;
+    static final byte TYPE_DENIED = 5;
+    static final int FLAG_MODIFIED = 0x01;
+    static final int FLAG_LINES = 0x02;
+    static final int FLAG_CONTENT_CHANGE = 0x04;
+}
@@ -0,0 +1,220 @@
+package modifiedfilesearch.output;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import modifiedfilesearch.data.ContentChange;
+import modifiedfilesearch.data.FileInfo;
+import modifiedfilesearch.data.FileInfoImpl;
+
+/**
+ * Reads results exported in the binary format of BinaryResultExporter, one
+ * at a time, so an export of any size can be loaded into a ResultStore or
+ * processed as a stream.
+ *
+ */
+public class BinaryResultReader implements Closeable {
+
+    /**
+     * Opens an exported file.
+     *
+     * @param file - Path of the file.
+     * @return the reader.
+     * @throws IOException - If the file could not be opened, or is not a
+     * binary export.
+     */
+    public static BinaryResultReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new BinaryResultReader(channel);
+        } catch (IOException ioe) {
+            channel.close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * @param channel - Channel the results are read from, which is closed
+     * when the reader is.
+     * @throws IOException - If the header could not be read, or is not that
+     * of a binary export.
+     */
+    public BinaryResultReader(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        buffer.flip();
+        if (!fill(8)) {
+            throw new IOException("Not a binary export");
+        }
+        if (buffer.getInt() != BinaryResultExporter.MAGIC) {
+            throw new IOException("Not a binary export");
+        }
+        int version = buffer.getInt();
+        if (version != BinaryResultExporter.VERSION) {
+            throw new IOException("Unsupported binary export version " + version);
+        }
+    }
+
+    /**
+     * Reads the next result.
+     *
+     * @return the FileInfo, or null if every result has been read.
+     * @throws IOException - If the result could not be read.
+     */
+    public FileInfo read() throws IOException {
+        if (!fill(4)) {
+            return null;
+        }
+        int length = buffer.getInt();
+        if (!fill(length)) {
+            throw new EOFException("Truncated binary export");
+        }
+        int end = buffer.position() + length;
+        byte type = buffer.get();
+        int flags = buffer.get();
+        BasicFileAttributes attrs = null;
+        if (type != BinaryResultExporter.TYPE_DENIED) {
+            attrs = new RecordAttributes(type, buffer.getLong(), buffer.getLong(),
+                    buffer.getLong());
+        }
+        byte[] pathBytes = new byte[buffer.getInt()];
+        buffer.get(pathBytes);
+        Path path = Paths.get(new String(pathBytes, StandardCharsets.UTF_8));
+        int[] lines = null;
+        if ((flags & BinaryResultExporter.FLAG_LINES) != 0) {
+            lines = new int[buffer.getInt()];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = buffer.getInt();
+            }
+        }
+        ContentChange change = null;
+        if ((flags & BinaryResultExporter.FLAG_CONTENT_CHANGE) != 0) {
+            change = CONTENT_CHANGES[buffer.get()];
+        }
+        // Skip any fields added by later versions.
+        buffer.position(end);
+        modified = (flags & BinaryResultExporter.FLAG_MODIFIED) != 0;
+        return new FileInfoImpl(path, attrs, lines, change);
+    }
+
+    /**
+     * @return flag indicating the result last read was exported as modified.
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads until the buffer holds at least the bytes needed, growing it if
+     * they would not fit.
+     *
+     * @return false if the channel ended before any of the bytes were read.
+     * @throws EOFException - If the channel ended part way through.
+     */
+    private boolean fill(int needed) throws IOException {
+        if (buffer.remaining() >= needed) {
+            return true;
+        }
+        if (buffer.capacity() < needed) {
+            ByteBuffer grown = ByteBuffer.allocate(needed);
+            grown.put(buffer);
+            buffer = grown;
+        } else {
+            buffer.compact();
+        }
+        boolean empty = buffer.position() == 0;
+        while (buffer.position() < needed) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                if (empty && buffer.remaining() == 0) {
+                    return false;
+                }
+                throw new EOFException("Truncated binary export");
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    /**
+     * BasicFileAttributes of a single result, as exported. The last access
+     * time is not exported and is reported as the last modified time.
+     */
+    private static class RecordAttributes implements BasicFileAttributes {
+
+        private RecordAttributes(byte type, long size, long modified, long created) {
+            this.type = type;
+            this.size = size;
+            this.modified = modified;
+            this.created = created;
+        }
+
+        @Override
+        public FileTime lastModifiedTime() {
+            return FileTime.from(modified, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public FileTime lastAccessTime() {
+            return lastModifiedTime();
+        }
+
+        @Override
+        public FileTime creationTime() {
+            return FileTime.from(created, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public boolean isRegularFile() {
+            return type == BinaryResultExporter.TYPE_REGULAR;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return type == BinaryResultExporter.TYPE_DIRECTORY;
+        }
+
+        @Override
+        public boolean isSymbolicLink() {
+            return type == BinaryResultExporter.TYPE_LINK;
+        }
+
+        @Override
+        public boolean isOther() {
+            return type == BinaryResultExporter.TYPE_OTHER;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public Object fileKey() {
+            return null;
+        }
+        private final byte type;
+        private final long size;
+        private final long modified;
+        private final long created;
+    }
+
+    private static final ContentChange[] CONTENT_CHANGES = ContentChange.values();
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(ResultExporter.BUFFER_SIZE);
+    private boolean modified;
+}
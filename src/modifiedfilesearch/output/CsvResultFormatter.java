@@ -0,0 +1,108 @@
+package modifiedfilesearch.output;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import modifiedfilesearch.data.ContentChange;
+import modifiedfilesearch.data.FileInfo;
+
+/**
+ * Formats results as RFC 4180 comma separated values with the columns
+ * type, path, size, lastModified and modified. When file content is
+ * searched, a lines column holds the numbers of the lines that matched,
+ * separated by semicolons. When file content is hashed, a content column
+ * describes how it changed.
+ *
+ */
+public class CsvResultFormatter implements ResultFormatter {
+
+    /**
+     * Constructs a CsvResultFormatter with only the basic columns.
+     */
+    public CsvResultFormatter() {
+        this(false, false);
+    }
+
+    /**
+     * Constructs a CsvResultFormatter.
+     *
+     * @param includeLines - Flag to add a column for the lines of each file
+     * matching a content search.
+     * @param includeContentChange - Flag to add a column for how the content
+     * of each file changed.
+     */
+    public CsvResultFormatter(boolean includeLines, boolean includeContentChange) {
+        this.includeLines = includeLines;
+        this.includeContentChange = includeContentChange;
+    }
+
+    @Override
+    public void appendHeader(StringBuilder builder) {
+        builder.append("type,path,size,lastModified,modified");
+        if (includeLines) {
+            builder.append(",lines");
+        }
+        if (includeContentChange) {
+            builder.append(",content");
+        }
+        builder.append("\r\n");
+    }
+
+    @Override
+    public void append(FileInfo info, boolean modified, StringBuilder builder) {
+        BasicFileAttributes attrs = info.getBasicFileAttributes();
+        builder.append(EntryType.of(info).getLabel()).append(',');
+        appendQuoted(info.getPath().toString(), builder);
+        builder.append(',');
+        if (attrs != null) {
+            builder.append(attrs.size()).append(',')
+                    .append(attrs.lastModifiedTime()).append(',')
+                    .append(modified);
+        } else {
+            builder.append(",,");
+        }
+        if (includeLines) {
+            builder.append(',');
+            int[] lines = info.getMatchingLines();
+            for (int i = 0; lines != null && i < lines.length; i++) {
+                if (i > 0) {
+                    builder.append(';');
+                }
+                builder.append(lines[i]);
+            }
+        }
+        if (includeContentChange) {
+            builder.append(',');
+            ContentChange change = info.getContentChange();
+            if (change != null) {
+                builder.append(change.getLabel());
+            }
+        }
+        builder.append("\r\n");
+    }
+
+    /**
+     * Appends a field, quoting it only if it contains a delimiter, quote or
+     * line break.
+     */
+    private static void appendQuoted(String field, StringBuilder builder) {
+        boolean needsQuotes = false;
+        for (int i = 0; i < field.length() && !needsQuotes; i++) {
+            char ch = field.charAt(i);
+            needsQuotes = ch == ',' || ch == '"' || ch == '\r' || ch == '\n';
+        }
+        if (!needsQuotes) {
+            builder.append(field);
+            return;
+        }
+        builder.append('"');
+        for (int i = 0; i < field.length(); i++) {
+            char ch = field.charAt(i);
+            if (ch == '"') {
+                builder.append('"');
+            }
+            builder.append(ch);
+        }
+        builder.append('"');
+    }
+    private final boolean includeLines;
+    private final boolean includeContentChange;
+}
@@ -0,0 +1,39 @@
+package modifiedfilesearch.output;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import modifiedfilesearch.data.FileInfo;
+
+/**
+ * The kind of entry a formatted result line describes.
+ *
+ */
+public enum EntryType {
+
+    FILE("file"), DIRECTORY("dir"), DENIED("denied");
+
+    private EntryType(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the label written to output for this type.
+     * @return the label written to output for this type.
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Determines the type of entry the FileInfo represents.
+     * @param info - FileInfo to be inspected.
+     * @return the EntryType of the FileInfo.
+     */
+    public static EntryType of(FileInfo info) {
+        BasicFileAttributes attrs = info.getBasicFileAttributes();
+        if (attrs == null) {
+            return DENIED;
+        }
+        return attrs.isDirectory() ? DIRECTORY : FILE;
+    }
+    private final String label;
+}
@@ -0,0 +1,68 @@
+package modifiedfilesearch.output;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * The formats results may be exported in.
+ *
+ */
+public enum ExportFormat {
+
+    CSV("csv", ".csv"), NDJSON("ndjson", ".ndjson"), BINARY("binary", ".mfsr");
+
+    private ExportFormat(String name, String extension) {
+        this.name = name;
+        this.extension = extension;
+    }
+
+    /**
+     * Returns the name used to choose this format on the command line.
+     * @return the name of this format.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the extension of files in this format, including the dot.
+     * @return the extension of files in this format.
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Finds the format with the name provided.
+     * @param name - Name of the format.
+     * @return the ExportFormat.
+     * @throws IllegalArgumentException - If there is no such format.
+     */
+    public static ExportFormat forName(String name) {
+        for (ExportFormat format : values()) {
+            if (format.name.equals(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown format " + name);
+    }
+
+    /**
+     * Finds the format of a file from its extension.
+     * @param file - Path of the file.
+     * @return the ExportFormat.
+     * @throws IllegalArgumentException - If the extension is not that of a
+     * format.
+     */
+    public static ExportFormat forFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (ExportFormat format : values()) {
+            if (name.endsWith(format.extension)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("The export file must end with .csv, .ndjson or .mfsr");
+    }
+    private final String name;
+    private final String extension;
+}
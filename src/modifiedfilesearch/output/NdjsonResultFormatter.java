@@ -0,0 +1,86 @@
+package modifiedfilesearch.output;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import modifiedfilesearch.data.ContentChange;
+import modifiedfilesearch.data.FileInfo;
+
+/**
+ * Formats results as newline delimited JSON, one object per line with the
+ * members type, path, size, lastModified and modified. size, lastModified
+ * and modified are omitted for entries that could not be accessed. Files
+ * whose content was searched also have a lines member, an array of the
+ * numbers of the lines that matched, and files whose content was hashed a
+ * content member describing how it changed.
+ *
+ */
+public class NdjsonResultFormatter implements ResultFormatter {
+
+    @Override
+    public void appendHeader(StringBuilder builder) {
+        // NDJSON has no header.
+    }
+
+    @Override
+    public void append(FileInfo info, boolean modified, StringBuilder builder) {
+        BasicFileAttributes attrs = info.getBasicFileAttributes();
+        builder.append("{\"type\":\"").append(EntryType.of(info).getLabel())
+                .append("\",\"path\":");
+        appendString(info.getPath().toString(), builder);
+        if (attrs != null) {
+            builder.append(",\"size\":").append(attrs.size())
+                    .append(",\"lastModified\":\"").append(attrs.lastModifiedTime())
+                    .append("\",\"modified\":").append(modified);
+        }
+        int[] lines = info.getMatchingLines();
+        if (lines != null) {
+            builder.append(",\"lines\":[");
+            for (int i = 0; i < lines.length; i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(lines[i]);
+            }
+            builder.append(']');
+        }
+        ContentChange change = info.getContentChange();
+        if (change != null) {
+            builder.append(",\"content\":\"").append(change.getLabel()).append('"');
+        }
+        builder.append("}\n");
+    }
+
+    /**
+     * Appends a JSON string literal, escaping characters as required by
+     * RFC 8259.
+     */
+    private static void appendString(String str, StringBuilder builder) {
+        builder.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char ch = str.charAt(i);
+            switch (ch) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (ch < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        builder.append(ch);
+                    }
+            }
+        }
+        builder.append('"');
+    }
+}
@@ -0,0 +1,181 @@
+package modifiedfilesearch.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import modifiedfilesearch.data.FileInfo;
+
+/**
+ * Writes results to a channel as they are found. Results are encoded into a
+ * buffer of fixed size that is written whenever it fills, so an export uses
+ * the same memory however many results it holds.
+ * <p>
+ * Methods are synchronized, so an export may be closed by one thread while
+ * another is writing to it, as happens when a search is cancelled.
+ *
+ */
+public abstract class ResultExporter implements Closeable {
+
+    /**
+     * Creates an exporter that writes to a channel.
+     *
+     * @param channel - Channel the results are written to, which is closed
+     * when the exporter is.
+     * @param format - Format of the results.
+     * @param includeLines - Flag to include the lines matching a content
+     * search, for formats that only include them on request.
+     * @param includeContentChange - Flag to include how the content of each
+     * file changed, for formats that only include it on request.
+     * @return the exporter.
+     * @throws IOException - If the header could not be written.
+     */
+    public static ResultExporter open(WritableByteChannel channel, ExportFormat format,
+            boolean includeLines, boolean includeContentChange) throws IOException {
+        ResultExporter exporter;
+        switch (format) {
+            case CSV:
+                exporter = new TextResultExporter(channel,
+                        new CsvResultFormatter(includeLines, includeContentChange));
+                break;
+            case NDJSON:
+                exporter = new TextResultExporter(channel, new NdjsonResultFormatter());
+                break;
+            default:
+                exporter = new BinaryResultExporter(channel);
+        }
+        exporter.writeHeader();
+        return exporter;
+    }
+
+    /**
+     * Creates an exporter that writes to a file, replacing any existing
+     * content.
+     *
+     * @param file - Path of the file.
+     * @param format - Format of the results.
+     * @param includeLines - As for open(WritableByteChannel, ...).
+     * @param includeContentChange - As for open(WritableByteChannel, ...).
+     * @return the exporter.
+     * @throws IOException - If the file could not be opened.
+     */
+    public static ResultExporter open(Path file, ExportFormat format, boolean includeLines,
+            boolean includeContentChange) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return open(channel, format, includeLines, includeContentChange);
+        } catch (IOException ioe) {
+            channel.close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * @param channel - Channel the results are written to.
+     */
+    ResultExporter(WritableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Exports a single result.
+     *
+     * @param info - FileInfo to be exported.
+     * @param modified - Flag indicating the file was modified within the
+     * window searched.
+     * @throws IOException - If the buffer could not be written, or the
+     * exporter has been closed.
+     */
+    public synchronized void export(FileInfo info, boolean modified) throws IOException {
+        if (!channel.isOpen()) {
+            throw new IOException("The export has been closed");
+        }
+        write(info, modified);
+    }
+
+    /**
+     * Writes every result exported so far to the channel.
+     *
+     * @throws IOException - If the buffer could not be written.
+     */
+    public synchronized void flush() throws IOException {
+        if (channel.isOpen()) {
+            flushPending();
+            drain();
+        }
+    }
+
+    /**
+     * Writes every result exported so far and closes the channel. Closing
+     * an exporter that is already closed has no effect.
+     *
+     * @throws IOException - If the buffer could not be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            flushPending();
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes the header of the format, if it has one.
+     */
+    abstract void writeHeader() throws IOException;
+
+    /**
+     * Encodes a result into the buffer, draining it as required.
+     */
+    abstract void write(FileInfo info, boolean modified) throws IOException;
+
+    /**
+     * Encodes anything held outside the buffer into it. Does nothing unless
+     * overridden.
+     */
+    void flushPending() throws IOException {
+    }
+
+    /**
+     * Writes the content of the buffer to the channel and clears it.
+     */
+    final void drain() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Writes the remaining content of a buffer to the channel.
+     */
+    final void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    /**
+     * Drains the buffer if it has less space remaining than needed.
+     *
+     * @param needed - Bytes needed, at most BUFFER_SIZE.
+     */
+    final void ensureRemaining(int needed) throws IOException {
+        if (buffer.remaining() < needed) {
+            drain();
+        }
+    }
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    final ByteBuffer buffer;
+    private final WritableByteChannel channel;
+}
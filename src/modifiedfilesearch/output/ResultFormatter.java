@@ -0,0 +1,28 @@
+package modifiedfilesearch.output;
+
+import modifiedfilesearch.data.FileInfo;
+
+/**
+ * Formats FileInfo objects as lines of text so search results can be
+ * streamed to other tools. Implementations must not depend on AWT or Swing.
+ *
+ */
+public interface ResultFormatter {
+
+    /**
+     * Appends the header line for this format, if the format has one.
+     * @param builder - StringBuilder the header is appended to.
+     */
+    public void appendHeader(StringBuilder builder);
+
+    /**
+     * Appends a single line, including the line separator, describing the
+     * FileInfo provided. A FileInfo without BasicFileAttributes represents a
+     * file or directory that could not be accessed.
+     * @param info - FileInfo to be formatted.
+     * @param modified - Flag indicating the file was modified within the
+     * window searched.
+     * @param builder - StringBuilder the line is appended to.
+     */
+    public void append(FileInfo info, boolean modified, StringBuilder builder);
+}
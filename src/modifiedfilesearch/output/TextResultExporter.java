@@ -0,0 +1,70 @@
+package modifiedfilesearch.output;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import modifiedfilesearch.data.FileInfo;
+
+/**
+ * Exports results as UTF-8 text formatted by a ResultFormatter. Lines are
+ * formatted into a StringBuilder, which is encoded into the buffer of the
+ * exporter whenever it grows past a fixed length.
+ *
+ */
+class TextResultExporter extends ResultExporter {
+
+    /**
+     * @param channel - Channel the results are written to.
+     * @param formatter - Formatter of the lines.
+     */
+    TextResultExporter(WritableByteChannel channel, ResultFormatter formatter) {
+        super(channel);
+        this.formatter = formatter;
+    }
+
+    @Override
+    void writeHeader() throws IOException {
+        formatter.appendHeader(builder);
+    }
+
+    @Override
+    void write(FileInfo info, boolean modified) throws IOException {
+        formatter.append(info, modified, builder);
+        if (builder.length() >= MAX_PENDING_CHARS) {
+            flushPending();
+        }
+    }
+
+    /**
+     * Encodes the lines held by the StringBuilder. The StringBuilder only
+     * holds whole lines, so characters are never split across encodings.
+     */
+    @Override
+    void flushPending() throws IOException {
+        CharBuffer chars = CharBuffer.wrap(builder);
+        encoder.reset();
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                drain();
+            }
+        } while (result.isOverflow());
+        while (encoder.flush(buffer).isOverflow()) {
+            drain();
+        }
+        builder.setLength(0);
+    }
+
+    private static final int MAX_PENDING_CHARS = 16 * 1024;
+    private final ResultFormatter formatter;
+    private final StringBuilder builder = new StringBuilder(MAX_PENDING_CHARS + 1024);
+    // Unpaired surrogates are replaced, as an OutputStreamWriter would.
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+}
@@ -4,38 +4,97 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.FocusListener;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import javax.swing.JComponent;
 import javax.swing.JLayer;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.plaf.LayerUI;
+import modifiedfilesearch.utils.NamedThreadFactory;
 
 /**
  * A delegate for a JLayer with a JTextField that allows a user to enter
  * a java.nio.File.Path. If the text in the field does not represent a valid
- * directory Path on this system, a small red box with a 'X' will be rendered 
+ * directory Path on this system, a small red box with a 'X' will be rendered
  * in the far right of the text field.
+ * <p>
+ * The text is never checked on the event dispatch thread, where a stat of a
+ * hung network mount would freeze the UI. Once the text has stopped changing
+ * for DEBOUNCE_MS it is checked by a short lived daemon thread of its own,
+ * and paint only renders the last result. A check blocked on a hung mount
+ * therefore never delays the check of other text, and a text already being
+ * checked is not checked again until its check returns. Recent results are
+ * cached for CACHE_TTL_MS.
  * @author Brendan Cashman
  */
-public class DirectoryEntryLayerUI 
+public class DirectoryEntryLayerUI
         extends LayerUI<JTextField> {
 
+    public DirectoryEntryLayerUI() {
+        debounceTimer = new Timer(DEBOUNCE_MS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                validateEntry();
+            }
+        });
+        debounceTimer.setRepeats(false);
+    }
+
+    /**
+     * See LayerUI. Listens to the text of the field, and checks its initial
+     * text.
+     * @param c
+     */
+    @Override
+    public void installUI(JComponent c) {
+        super.installUI(c);
+        jLayer = (JLayer) c;
+        textField = (JTextField) jLayer.getView();
+        textField.getDocument().addDocumentListener(documentListener);
+        textField.addFocusListener(focusListener);
+        validateEntry();
+    }
+
+    /**
+     * See LayerUI
+     * @param c
+     */
+    @Override
+    public void uninstallUI(JComponent c) {
+        debounceTimer.stop();
+        textField.getDocument().removeDocumentListener(documentListener);
+        textField.removeFocusListener(focusListener);
+        textField = null;
+        jLayer = null;
+        super.uninstallUI(c);
+    }
+
     /**
      * See LayerUI
      * @param g
-     * @param c 
+     * @param c
      */
     @Override
     public void paint(Graphics g, JComponent c) {
         super.paint(g, c);
 
-        JLayer jLayer = (JLayer) c;
-        JTextField textField = (JTextField) jLayer.getView();
-        evaluateEntry(textField.getText());
         if (!validPath) {
             Graphics2D g2 = (Graphics2D) g.create();
 
@@ -57,33 +116,173 @@ public class DirectoryEntryLayerUI
             g2.dispose();
         }
     }
-    
+
     /**
-     * 
-     * @return flag indicating whether the JTextField current text represents a 
-     * valid directory.
+     *
+     * @return flag indicating whether the JTextField current text represents a
+     * valid directory. False while the current text is still being checked.
      */
     public boolean isEntryValid() {
-        return validPath;
+        return validPath && !isEntryPending();
     }
-    
+
+    /**
+     * @return flag indicating whether the JTextField current text has not yet
+     * been checked.
+     */
+    public boolean isEntryPending() {
+        return textField == null || !textField.getText().equals(validatedEntry);
+    }
+
+    /**
+     * Checks the current text of the field: immediately if its result is
+     * cached, otherwise on a thread of its own, unless it is already being
+     * checked. Invoked on the event dispatch thread.
+     */
+    private void validateEntry() {
+        if (textField == null) {
+            return;
+        }
+        String entry = textField.getText();
+        CachedResult cached = cache.get(entry);
+        long ttl = TimeUnit.MILLISECONDS.toNanos(CACHE_TTL_MS);
+        if (cached != null && System.nanoTime() - cached.checked < ttl) {
+            entryValidated(entry, cached.directory);
+            return;
+        }
+        if (checking.add(entry)) {
+            Thread checker = checkerFactory.newThread(new CheckTask(entry));
+            // A check blocked on a hung mount must not keep the JVM alive.
+            checker.setDaemon(true);
+            checker.start();
+        }
+    }
+
+    /**
+     * Records the result of checking an entry, and shows it if the entry is
+     * still the text of the field. Invoked on the event dispatch thread.
+     */
+    private void entryValidated(String entry, boolean directory) {
+        if (textField == null || !textField.getText().equals(entry)) {
+            return;
+        }
+        validatedEntry = entry;
+        if (validPath != directory) {
+            validPath = directory;
+            jLayer.repaint();
+        }
+    }
+
     /**
      * Evaluates a String to determine if it represents a directory on this
-     * system.
+     * system. Invoked on the background thread, as it may block.
      * @param entry String to be evaluated.
      * @return flag indicating success of evaluation.
      */
-    private boolean evaluateEntry(String entry){
+    private static boolean evaluateEntry(String entry){
         try {
             Path userEntry = FileSystems.getDefault().getPath(entry);
-            validPath = Files.isDirectory(userEntry, LinkOption.NOFOLLOW_LINKS);
+            return Files.isDirectory(userEntry, LinkOption.NOFOLLOW_LINKS);
         } catch (InvalidPathException ipe) {
             // Using the InvalidPathException to validate path
-            validPath = false;
+            return false;
+        }
+    }
+
+    /**
+     * Checks a single entry, then reports the result on the event dispatch
+     * thread.
+     */
+    private class CheckTask implements Runnable {
+
+        private CheckTask(String entry) {
+            this.entry = entry;
         }
-        return validPath;
+
+        @Override
+        public void run() {
+            final boolean directory = evaluateEntry(entry);
+            final long checked = System.nanoTime();
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    checking.remove(entry);
+                    cache.put(entry, new CachedResult(directory, checked));
+                    entryValidated(entry, directory);
+                }
+            });
+        }
+        private final String entry;
     }
-    
+
+    private final DocumentListener documentListener = new DocumentListener() {
+        @Override
+        public void insertUpdate(DocumentEvent e) {
+            debounceTimer.restart();
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e) {
+            debounceTimer.restart();
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e) {
+            debounceTimer.restart();
+        }
+    };
+
+    /**
+     * Checks the text again when the field gains focus, as the directory
+     * may have been created or removed meanwhile.
+     */
+    private final FocusListener focusListener = new FocusAdapter() {
+        @Override
+        public void focusGained(FocusEvent e) {
+            validateEntry();
+        }
+    };
+
+    /**
+     * The result of checking an entry, and when it was checked.
+     */
+    private static class CachedResult {
+
+        private CachedResult(boolean directory, long checked) {
+            this.directory = directory;
+            this.checked = checked;
+        }
+        private final boolean directory;
+        private final long checked;
+    }
+
+    /**
+     * Caches the results of recently checked entries, in access order.
+     */
+    private static class ResultCache extends LinkedHashMap<String, CachedResult> {
+
+        private ResultCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+            return size() > CACHE_SIZE;
+        }
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static final int DEBOUNCE_MS = 250;
+    private static final int CACHE_TTL_MS = 5000;
+    private static final int CACHE_SIZE = 32;
+    private final Timer debounceTimer;
+    private final NamedThreadFactory checkerFactory =
+            new NamedThreadFactory("directory-check");
+    // Only accessed on the event dispatch thread.
+    private final ResultCache cache = new ResultCache();
+    private final Set<String> checking = new HashSet<String>();
+    private JLayer jLayer;
+    private JTextField textField;
+    private String validatedEntry;
     private boolean validPath = false;
 }
-
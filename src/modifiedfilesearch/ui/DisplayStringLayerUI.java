@@ -4,6 +4,7 @@ import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Composite;
 import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Shape;
@@ -12,10 +13,11 @@ import java.awt.event.ActionListener;
 import java.awt.font.FontRenderContext;
 import java.awt.font.TextLayout;
 import java.awt.geom.AffineTransform;
-import java.awt.geom.Rectangle2D;
 import java.beans.PropertyChangeEvent;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Queue;
 import javax.swing.JComponent;
 import javax.swing.JLayer;
@@ -24,6 +26,8 @@ import javax.swing.Timer;
 import javax.swing.plaf.LayerUI;
 
 import modifiedfilesearch.data.DisplayString;
+import modifiedfilesearch.metrics.SearchMetrics;
+import modifiedfilesearch.utils.RingBuffer;
 
 /**
  * A delegate for a JLayer with a JPanel that decorates said JPanel with the
@@ -42,7 +46,7 @@ public class DisplayStringLayerUI extends LayerUI<JComponent> implements ActionL
     public DisplayStringLayerUI(Queue<DisplayString> dspStrQueue) {
         super();
         this.dspStrQueue = dspStrQueue;
-        this.localList = new ArrayList<DisplayString>();
+        this.localList = new RingBuffer<DisplayString>(DEFAULT_ROWS + scrollback);
     }
 
     /**
@@ -53,8 +57,13 @@ public class DisplayStringLayerUI extends LayerUI<JComponent> implements ActionL
      */
     @Override
     public void paint(Graphics g, JComponent c) {
+        long paintStart = System.nanoTime();
         int w = c.getWidth();
         int h = c.getHeight();
+        visibleRows = (int) Math.ceil(h / LINE_HEIGHT);
+        // Only the rows that fit, plus the scrollback, are retained.
+        localList.setCapacity(Math.max(visibleRows, 1) + scrollback);
+        layoutCache.maxSize = localList.capacity();
 
         // Paint the view.
         super.paint(g, c);
@@ -71,7 +80,7 @@ public class DisplayStringLayerUI extends LayerUI<JComponent> implements ActionL
         g2.setComposite(urComposite);
         if (isShowingStatus) {
             float buffer = 5.f;
-            double yTInc = 14;
+            double yTInc = LINE_HEIGHT;
             float yTrack = 0.f;
             int startIndex = 0;
             double space = localList.size() * yTInc;
@@ -81,22 +90,27 @@ public class DisplayStringLayerUI extends LayerUI<JComponent> implements ActionL
             if (space > h) {
                 startIndex = (int) Math.ceil((space - h) / yTInc);
             }
+            g2.setFont(STATUS_FONT);
+            FontRenderContext frc = g2.getFontRenderContext();
+            if (w != layoutCacheWidth || !frc.equals(layoutCacheFrc)) {
+                // Truncation depends on the width, so laid out lines are
+                // only reused until the component is resized.
+                layoutCache.clear();
+                layoutCacheWidth = w;
+                layoutCacheFrc = frc;
+            }
+            FontMetrics fontMetrics = g2.getFontMetrics(STATUS_FONT);
             for (int i = startIndex; i < localList.size(); i++) {
                 DisplayString dispStr = localList.get(i);
                 yTrack += yTInc;
-                String pathString = dispStr.getString();
-                Font font = new Font("Monospaced", Font.BOLD, 13);
-
-                // If the length of the String exceeds, the available space,
-                // abbreviate it.
-                Rectangle2D rect = font.getStringBounds(pathString, g2.getFontRenderContext());
-                while (rect.getWidth() > w) {
-                    pathString = shortenStringInMiddle(pathString, pathString.length() - 6);
-                    rect = font.getStringBounds(pathString, g2.getFontRenderContext());
+                TextLayout tl = layoutCache.get(dispStr.getString());
+                if (tl == null) {
+                    // If the length of the String exceeds, the available space,
+                    // abbreviate it.
+                    String pathString = shortenStringToWidth(dispStr.getString(), fontMetrics, w);
+                    tl = new TextLayout(pathString, STATUS_FONT, frc);
+                    layoutCache.put(dispStr.getString(), tl);
                 }
-                g2.setFont(font);
-                FontRenderContext frc = g2.getFontRenderContext();
-                TextLayout tl = new TextLayout(pathString, font, frc);
                 if (isTextOutlined) {
                     AffineTransform at = new AffineTransform();
                     at.setToTranslation(buffer, yTrack);
@@ -109,6 +123,9 @@ public class DisplayStringLayerUI extends LayerUI<JComponent> implements ActionL
             }
         }
         g2.dispose();
+        if (metrics != null && isShowingStatus) {
+            metrics.paintCompleted(System.nanoTime() - paintStart);
+        }
     }
 
     /**
@@ -132,6 +149,8 @@ public class DisplayStringLayerUI extends LayerUI<JComponent> implements ActionL
      */
     public void stop() {
         localList.clear();
+        layoutCache.clear();
+        skippedCount = 0;
         isFadingFinished = false;
         isFadingOut = false;
         isShowingStatus = false;
@@ -164,8 +183,8 @@ public class DisplayStringLayerUI extends LayerUI<JComponent> implements ActionL
                     //throttle rendering so animation doesn't spam the screen
                     setFPS(10);
                 }
-                if (dspStrQueue.peek() != null && isRunning) {
-                    localList.add(dspStrQueue.poll());
+                if (isRunning) {
+                    drainQueue();
                 }
             } else if ( isFadingOut && fadeCount < fadeLimit) {
                 fadeCount++;
@@ -179,6 +198,106 @@ public class DisplayStringLayerUI extends LayerUI<JComponent> implements ActionL
         }
     }
     
+    /**
+     * Moves DisplayStrings from the queue to the screen according to the
+     * DrainMode.
+     */
+    private void drainQueue() {
+        int displayed = 0;
+        int skipped = 0;
+        switch (drainMode) {
+            case SCROLL:
+                if (dspStrQueue.peek() != null) {
+                    localList.add(dspStrQueue.poll());
+                    displayed++;
+                }
+                break;
+            case BATCH:
+                for (int i = 0; i < maxPerFrame; i++) {
+                    DisplayString dispStr = dspStrQueue.poll();
+                    if (dispStr == null) {
+                        break;
+                    }
+                    localList.add(dispStr);
+                    displayed++;
+                }
+                break;
+            case CATCH_UP:
+                // Only the newest DisplayStrings that fit on screen are kept.
+                int rows = Math.max(visibleRows, 1);
+                Deque<DisplayString> newest = new ArrayDeque<DisplayString>(rows);
+                for (int i = 0; i < CATCH_UP_LIMIT; i++) {
+                    DisplayString dispStr = dspStrQueue.poll();
+                    if (dispStr == null) {
+                        break;
+                    }
+                    if (newest.size() == rows) {
+                        newest.removeFirst();
+                        skipped++;
+                    }
+                    newest.addLast(dispStr);
+                }
+                for (DisplayString dispStr : newest) {
+                    localList.add(dispStr);
+                }
+                displayed = newest.size();
+                skippedCount += skipped;
+                break;
+        }
+        if (metrics != null && (displayed > 0 || skipped > 0)) {
+            metrics.displayDrained(displayed, skipped);
+        }
+    }
+
+    /**
+     * Sets the SearchMetrics that the DisplayStrings drained from the queue,
+     * and the time taken to paint them, are recorded to.
+     * @param metrics - SearchMetrics to record to, or null.
+     */
+    public void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+        if (metrics != null) {
+            metrics.setDisplayQueue(dspStrQueue);
+        }
+    }
+
+    /**
+     * Sets how DisplayStrings are moved from the queue to the screen on each
+     * frame.
+     * @param drainMode - The DrainMode to use.
+     */
+    public void setDrainMode(DrainMode drainMode) {
+        this.drainMode = drainMode;
+    }
+
+    /**
+     * Sets the most DisplayStrings moved to the screen per frame in the
+     * BATCH DrainMode.
+     * @param maxPerFrame - Number of DisplayStrings, at least 1.
+     */
+    public void setMaxPerFrame(int maxPerFrame) {
+        this.maxPerFrame = Math.max(maxPerFrame, 1);
+    }
+
+    /**
+     * Sets the number of DisplayStrings retained in addition to those that
+     * fit on screen, which will be displayed if the component grows.
+     * @param scrollback - Number of DisplayStrings, at least 0.
+     */
+    public void setScrollback(int scrollback) {
+        this.scrollback = Math.max(scrollback, 0);
+        localList.setCapacity(Math.max(visibleRows, 1) + this.scrollback);
+    }
+
+    /**
+     * Provides the number of DisplayStrings that were never displayed because
+     * the CATCH_UP DrainMode skipped them.
+     * @return the number of skipped DisplayStrings.
+     */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
     /**
      * Toggles whether the outline of the text is drawn.
      * @param isOutlined - Flag to display outlines or not.
@@ -238,7 +357,91 @@ public class DisplayStringLayerUI extends LayerUI<JComponent> implements ActionL
         return builder.toString();
     }
     
-    private final List<DisplayString> localList;
+    /**
+     * How DisplayStrings are moved from the queue to the screen on each
+     * frame. The rate of frames is set by setFPS.
+     */
+    public enum DrainMode {
+        /**
+         * One DisplayString per frame, so the display scrolls slowly.
+         */
+        SCROLL,
+        /**
+         * Up to the maximum per frame, see setMaxPerFrame.
+         */
+        BATCH,
+        /**
+         * Everything queued, skipping to the newest DisplayStrings, so the
+         * display keeps up with the search regardless of its speed.
+         */
+        CATCH_UP
+    }
+
+    /**
+     * Shortens a string to fit the width provided, replacing the middle
+     * characters with "...". The characters kept are measured once each,
+     * alternating between the start and the end of the string.
+     *
+     * @param origStr - String to shorten.
+     * @param metrics - FontMetrics of the Font the string will be drawn in.
+     * @param width - Width available, in pixels.
+     * @return the original string if it fits, otherwise the shortened string.
+     */
+    public static String shortenStringToWidth(String origStr, FontMetrics metrics, int width) {
+        if (metrics.stringWidth(origStr) <= width) {
+            return origStr;
+        }
+        String middle = "...";
+        int available = width - metrics.stringWidth(middle);
+        int used = 0;
+        int start = 0;
+        int end = origStr.length();
+        boolean fromStart = true;
+        while (start < end) {
+            char ch = fromStart ? origStr.charAt(start) : origStr.charAt(end - 1);
+            used += metrics.charWidth(ch);
+            if (used > available) {
+                break;
+            }
+            if (fromStart) {
+                start++;
+            } else {
+                end--;
+            }
+            fromStart = !fromStart;
+        }
+        StringBuilder builder = new StringBuilder(start + middle.length() + origStr.length() - end);
+        builder.append(origStr, 0, start).append(middle).append(origStr, end, origStr.length());
+        return builder.toString();
+    }
+
+    /**
+     * Caches the TextLayout of recently painted strings, in access order.
+     */
+    private static class LayoutCache extends LinkedHashMap<String, TextLayout> {
+
+        private LayoutCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TextLayout> eldest) {
+            return size() > maxSize;
+        }
+        private static final long serialVersionUID = 1L;
+        private int maxSize = DEFAULT_ROWS + DEFAULT_SCROLLBACK;
+    }
+
+    private final RingBuffer<DisplayString> localList;
+    private final LayoutCache layoutCache = new LayoutCache();
+    private int layoutCacheWidth = -1;
+    private FontRenderContext layoutCacheFrc;
+    private DrainMode drainMode = DrainMode.SCROLL;
+    private int maxPerFrame = 100;
+    private int visibleRows;
+    private int scrollback = DEFAULT_SCROLLBACK;
+    private long skippedCount;
+    private SearchMetrics metrics;
     private boolean isFadingFinished;
     private boolean isRunning;
     private boolean isShowingStatus;
@@ -250,4 +453,12 @@ public class DisplayStringLayerUI extends LayerUI<JComponent> implements ActionL
     private final Queue<DisplayString> dspStrQueue;
     private Timer renderTimer;
     private static final String RENDER_ACTION_COMMAND = "render";
+    private static final double LINE_HEIGHT = 14;
+    private static final Font STATUS_FONT = new Font("Monospaced", Font.BOLD, 13);
+    private static final int DEFAULT_ROWS = 50;
+    private static final int DEFAULT_SCROLLBACK = 100;
+    /**
+     * Bounds the time a CATCH_UP frame spends draining the queue.
+     */
+    private static final int CATCH_UP_LIMIT = 50000;
 }
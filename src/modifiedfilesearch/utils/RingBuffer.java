@@ -0,0 +1,97 @@
+package modifiedfilesearch.utils;
+
+import java.util.Arrays;
+
+/**
+ * A fixed capacity buffer that retains the most recently added elements.
+ * Once the buffer is full, adding an element discards the oldest one. This
+ * implementation is not thread safe.
+ *
+ * @param <E> - Type of element held.
+ */
+public class RingBuffer<E> {
+
+    /**
+     * Creates an empty RingBuffer.
+     * @param capacity - Most elements retained, at least 1.
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.elements = new Object[capacity];
+    }
+
+    /**
+     * Adds an element, discarding the oldest element if the buffer is full.
+     * @param element - Element to add.
+     */
+    public void add(E element) {
+        elements[(head + size) % elements.length] = element;
+        if (size < elements.length) {
+            size++;
+        } else {
+            head = (head + 1) % elements.length;
+        }
+    }
+
+    /**
+     * Provides an element by age, 0 being the oldest element retained.
+     * @param index - Index of the element, less than size().
+     * @return the element.
+     */
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        return (E) elements[(head + index) % elements.length];
+    }
+
+    /**
+     * @return the number of elements retained.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the most elements that can be retained.
+     */
+    public int capacity() {
+        return elements.length;
+    }
+
+    /**
+     * Changes the capacity, retaining the newest elements that fit.
+     * @param capacity - Most elements retained, at least 1.
+     */
+    public void setCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        if (capacity == elements.length) {
+            return;
+        }
+        int retained = Math.min(size, capacity);
+        Object[] resized = new Object[capacity];
+        for (int i = 0; i < retained; i++) {
+            resized[i] = elements[(head + size - retained + i) % elements.length];
+        }
+        elements = resized;
+        head = 0;
+        size = retained;
+    }
+
+    /**
+     * Removes every element.
+     */
+    public void clear() {
+        Arrays.fill(elements, null);
+        head = 0;
+        size = 0;
+    }
+    private Object[] elements;
+    private int head;
+    private int size;
+}